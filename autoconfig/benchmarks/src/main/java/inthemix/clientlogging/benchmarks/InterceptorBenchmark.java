@@ -0,0 +1,247 @@
+package inthemix.clientlogging.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import inthemix.clientlogging.LoggingClientHttpRequestInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-call cost of {@link LoggingClientHttpRequestInterceptor#intercept} against an in-process
+ * {@link ClientHttpRequestExecution}, including reading and closing the response body like a caller would.
+ * <p>
+ * The {@code buffering} parameter emulates the former {@code BufferingClientHttpRequestFactory} wrapping,
+ * which read every response body into a byte array before handing it to the caller.
+ * <p>
+ * Run all benchmarks with the GC profiler to see allocation rates:
+ * <pre>
+ * mvn package && java -jar target/benchmarks.jar -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InterceptorBenchmark {
+
+    public enum LoggingMode {
+        /** Logger at INFO and no logging headers: logging is off */
+        OFF,
+        /** Logger at INFO with X-Log-Request and X-Log-Response headers: logging at INFO */
+        HEADER_INFO,
+        /** Logger at DEBUG: logging of all requests and responses, including bodies */
+        DEBUG
+    }
+
+    /**
+     * The exchange, the same with and without the interceptor.
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+
+        @Param({ "4", "32" })
+        int headerCount;
+
+        @Param({ "256", "65536" })
+        int bodySize;
+
+        @Param({ "false", "true" })
+        boolean buffering;
+
+        HttpRequest request;
+        byte[] requestBody;
+        ClientHttpRequestExecution execution;
+        final byte[] readBuffer = new byte[8192];
+
+        @Setup
+        public void setUp() {
+            HttpHeaders requestHeaders = headers(headerCount);
+            requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+            requestHeaders.setBearerAuth("secret");
+            request = new InMemoryRequest(URI.create("http://httpbin/post?ean=123456"), requestHeaders);
+            requestBody = json(256);
+
+            HttpHeaders responseHeaders = headers(headerCount);
+            responseHeaders.setContentType(MediaType.APPLICATION_JSON);
+            byte[] responseBody = json(bodySize);
+            responseHeaders.setContentLength(responseBody.length);
+            execution = buffering
+                ? (req, body) -> buffer(new InMemoryResponse(responseHeaders, responseBody))
+                : (req, body) -> new InMemoryResponse(responseHeaders, responseBody);
+        }
+    }
+
+    /**
+     * The interceptor, only used by the benchmark that intercepts, so the baseline isn't run once per mode.
+     */
+    @State(Scope.Thread)
+    public static class Logging {
+
+        @Param
+        LoggingMode mode;
+
+        LoggingClientHttpRequestInterceptor interceptor;
+        /** The exchange's request, with the headers that switch logging on in {@link LoggingMode#HEADER_INFO} */
+        HttpRequest request;
+
+        @Setup
+        public void setUp(Exchange exchange) {
+            LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+            loggerContext.getLogger("inthemix.client").setLevel(mode == LoggingMode.DEBUG ? Level.DEBUG : Level.INFO);
+
+            interceptor = new LoggingClientHttpRequestInterceptor(Set.of("Authorization"));
+
+            HttpHeaders requestHeaders = new HttpHeaders();
+            requestHeaders.putAll(exchange.request.getHeaders());
+            if (mode == LoggingMode.HEADER_INFO) {
+                requestHeaders.set(LoggingClientHttpRequestInterceptor.LOG_REQUEST_REQUEST_HEADER, "true");
+                requestHeaders.set(LoggingClientHttpRequestInterceptor.LOG_RESPONSE_REQUEST_HEADER, "true");
+            }
+            request = new InMemoryRequest(exchange.request.getURI(), requestHeaders);
+        }
+    }
+
+    @Benchmark
+    public long withoutInterceptor(Exchange exchange) throws IOException {
+        try (ClientHttpResponse response = exchange.execution.execute(exchange.request, exchange.requestBody)) {
+            return consume(response.getBody(), exchange.readBuffer);
+        }
+    }
+
+    @Benchmark
+    public long intercept(Exchange exchange, Logging logging) throws IOException {
+        try (ClientHttpResponse response = logging.interceptor.intercept(logging.request, exchange.requestBody,
+            exchange.execution)) {
+            return consume(response.getBody(), exchange.readBuffer);
+        }
+    }
+
+    private static long consume(InputStream body, byte[] readBuffer) throws IOException {
+        long total = 0;
+        int read;
+        while ((read = body.read(readBuffer)) != -1) {
+            total += read;
+        }
+        body.close();
+        return total;
+    }
+
+    /**
+     * Does what {@code BufferingClientHttpResponseWrapper} does: reads the full body before returning.
+     */
+    private static ClientHttpResponse buffer(InMemoryResponse response) throws IOException {
+        return new InMemoryResponse(response.getHeaders(), response.getBody().readAllBytes());
+    }
+
+    private static HttpHeaders headers(int count) {
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 0; i < count; i++) {
+            headers.add("X-Benchmark-Header-" + i, "value-" + i);
+        }
+        return headers;
+    }
+
+    private static byte[] json(int size) {
+        byte[] body = new byte[size];
+        Arrays.fill(body, (byte) 'x');
+        byte[] prefix = "{\"data\":\"".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(prefix, 0, body, 0, Math.min(prefix.length, size));
+        if (size > prefix.length + 2) {
+            body[size - 2] = '"';
+            body[size - 1] = '}';
+        }
+        return body;
+    }
+
+    private record InMemoryRequest(URI uri, HttpHeaders headers) implements HttpRequest {
+
+        @Override
+        public HttpMethod getMethod() {
+            return HttpMethod.POST;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    private static class InMemoryResponse implements ClientHttpResponse {
+
+        private final HttpHeaders headers;
+        private final InputStream body;
+
+        InMemoryResponse(HttpHeaders headers, byte[] body) {
+            this.headers = headers;
+            this.body = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(InterceptorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package inthemix.clientlogging.benchmarks;
+
+import inthemix.clientlogging.JsonBodyRedactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the cost of rendering a JSON body with {@link JsonBodyRedactor} compared to decoding it as it is,
+ * for bodies of typical API responses: arrays of objects with a few nested and sensitive fields.
+ * Divide the average time for the 1 MB body by its exact size, printed at setup, to get the cost per MB.
+ * <pre>
+ * mvn package && java -jar target/benchmarks.jar RedactionBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RedactionBenchmark {
+
+    @Param({ "1024", "65536", "1048576" })
+    int bodySize;
+
+    private JsonBodyRedactor redactor;
+    private byte[] body;
+    private final StringBuilder builder = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        redactor = new JsonBodyRedactor(List.of(
+            Pattern.compile("(?i).*password.*"),
+            Pattern.compile("(?i).*secret.*"),
+            Pattern.compile("(?i).*token.*"),
+            Pattern.compile("(?i).*api[-_]?key.*")), Integer.MAX_VALUE);
+        body = json(bodySize);
+        System.out.println("Body of " + body.length + " bytes");
+    }
+
+    @Benchmark
+    public int decode() {
+        builder.setLength(0);
+        builder.append(new String(body, StandardCharsets.UTF_8));
+        return builder.length();
+    }
+
+    @Benchmark
+    public int redact() {
+        builder.setLength(0);
+        redactor.appendRedacted(builder, body, body.length, StandardCharsets.UTF_8);
+        return builder.length();
+    }
+
+    private static byte[] json(int size) {
+        StringBuilder json = new StringBuilder(size + 256).append('[');
+        for (int i = 0; json.length() < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                .append(",\"name\":\"Customer ").append(i).append('"')
+                .append(",\"email\":\"customer").append(i).append("@example.com\"")
+                .append(",\"accessToken\":\"eyJhbGciOiJIUzI1NiJ9.").append(Integer.toHexString(i * 31)).append('"')
+                .append(",\"address\":{\"street\":\"Main Street ").append(i).append("\",\"city\":\"Utrecht\"}")
+                .append(",\"credentials\":{\"username\":\"user").append(i).append("\",\"password\":\"Welkom").append(i).append("\"}")
+                .append(",\"tags\":[\"a\",\"b\",\"c\"],\"active\":true,\"balance\":").append(i * 1.25)
+                .append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RedactionBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package inthemix.clientcache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * A {@code 200 OK} response served from a {@link CachedResponse}.
+ */
+class CachedClientHttpResponse implements ClientHttpResponse {
+
+    private final CachedResponse cached;
+    private InputStream body;
+
+    CachedClientHttpResponse(CachedResponse cached) {
+        this.cached = cached;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() {
+        return HttpStatus.OK;
+    }
+
+    @Override
+    public String getStatusText() {
+        return HttpStatus.OK.getReasonPhrase();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return cached.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() {
+        if (body == null) {
+            body = new ByteArrayInputStream(cached.getBody());
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+    }
+}
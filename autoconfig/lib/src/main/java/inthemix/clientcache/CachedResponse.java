@@ -0,0 +1,101 @@
+package inthemix.clientcache;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cached {@code 200 OK} response: its headers, full body and validators, plus until when it's fresh. When it varies
+ * by {@code Accept-Encoding}, it also keeps that header of the request it answered, as it only matches requests with
+ * the same one. Instances are immutable; revalidation replaces them.
+ */
+final class CachedResponse {
+
+    /** Rough per-entry overhead of the map entry, this object and the header map, in bytes */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final HttpHeaders headers;
+    private final byte[] body;
+    private final long freshUntilNanos;
+    /** The {@code Accept-Encoding} of the request, or {@code null} if the response doesn't vary by it */
+    private final String acceptEncoding;
+    private final long weight;
+
+    /**
+     * @param acceptEncoding the {@code Accept-Encoding} of the request, an empty string if it had none
+     */
+    CachedResponse(HttpHeaders headers, byte[] body, long freshUntilNanos, String acceptEncoding) {
+        this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+        this.body = body;
+        this.freshUntilNanos = freshUntilNanos;
+        this.acceptEncoding = variesByAcceptEncoding(headers) ? acceptEncoding : null;
+        this.weight = weigh(headers, body);
+    }
+
+    /**
+     * @return the {@code Accept-Encoding} of the request, or an empty string if it has none
+     */
+    static String acceptEncoding(HttpHeaders requestHeaders) {
+        return String.join(", ", requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    HttpHeaders getHeaders() {
+        return headers;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    String getETag() {
+        return headers.getETag();
+    }
+
+    String getLastModified() {
+        return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+    }
+
+    boolean isFresh(long nowNanos) {
+        return freshUntilNanos - nowNanos > 0;
+    }
+
+    boolean hasValidators() {
+        return getETag() != null || getLastModified() != null;
+    }
+
+    /**
+     * @param acceptEncoding the {@code Accept-Encoding} of a request, an empty string if it has none
+     * @return whether this response can be used for that request
+     */
+    boolean matches(String acceptEncoding) {
+        return this.acceptEncoding == null || this.acceptEncoding.equals(acceptEncoding);
+    }
+
+    private static boolean variesByAcceptEncoding(HttpHeaders headers) {
+        for (String vary : headers.getVary()) {
+            if (vary.equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the approximate number of bytes of heap this entry occupies
+     */
+    long getWeight() {
+        return weight;
+    }
+
+    private static long weigh(HttpHeaders headers, byte[] body) {
+        long weight = ENTRY_OVERHEAD + body.length;
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            weight += 2L * header.getKey().length();
+            for (String value : header.getValue()) {
+                weight += 2L * value.length();
+            }
+        }
+        return weight;
+    }
+}
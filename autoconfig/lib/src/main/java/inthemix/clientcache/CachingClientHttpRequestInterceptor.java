@@ -0,0 +1,261 @@
+package inthemix.clientcache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Private HTTP cache for GET requests. Successful responses that carry an {@code ETag} or {@code Last-Modified}
+ * validator or a {@code max-age} are kept in a {@link ResponseCache}: while fresh they're served without contacting
+ * the server, afterwards the request is made conditional so that an unchanged resource costs a {@code 304 Not Modified}
+ * instead of a full transfer.
+ * <p>
+ * {@code Cache-Control: no-store} is honoured on requests and responses, {@code no-cache} forces revalidation.
+ * Requests with an {@code Authorization} or {@code Cookie} header or their own conditional headers bypass the cache,
+ * and unsafe requests invalidate the cached response for their URI.
+ * <p>
+ * There's one response per URI. Responses that vary by {@code Accept-Encoding} are only used for requests that accept
+ * the same encodings, and replaced by the response to a request that doesn't; responses that vary by any other
+ * request header aren't cached.
+ */
+public class CachingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    public static final int DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+
+    private final ResponseCache cache;
+    private final int maxEntryBytes;
+
+    public CachingClientHttpRequestInterceptor(ResponseCache cache) {
+        this(cache, DEFAULT_MAX_ENTRY_BYTES);
+    }
+
+    /**
+     * @param maxEntryBytes maximum size of a response body to cache; larger responses are streamed to the caller
+     */
+    public CachingClientHttpRequestInterceptor(ResponseCache cache, int maxEntryBytes) {
+        this.cache = cache;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        HttpMethod method = request.getMethod();
+        String key = request.getURI().toString();
+        if (method != HttpMethod.GET) {
+            if (method != HttpMethod.HEAD && method != HttpMethod.OPTIONS && method != HttpMethod.TRACE) {
+                cache.remove(key);
+            }
+            return execution.execute(request, body);
+        }
+
+        HttpHeaders requestHeaders = request.getHeaders();
+        CacheDirectives requestDirectives = CacheDirectives.parse(requestHeaders.getCacheControl());
+        if (requestDirectives.noStore() || requestHeaders.containsKey(HttpHeaders.AUTHORIZATION)
+            || requestHeaders.containsKey(HttpHeaders.COOKIE)
+            || requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH)
+            || requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+            return execution.execute(request, body);
+        }
+
+        long now = System.nanoTime();
+        String acceptEncoding = CachedResponse.acceptEncoding(requestHeaders);
+        CachedResponse cached = cache.get(key);
+        if (cached != null && !cached.matches(acceptEncoding)) {
+            // another encoding, so neither its body nor its validators apply
+            cached = null;
+        }
+        if (cached != null) {
+            if (cached.isFresh(now) && !requestDirectives.noCache()) {
+                cache.recordHit();
+                return new CachedClientHttpResponse(cached);
+            }
+            if (cached.getETag() != null) {
+                requestHeaders.setIfNoneMatch(cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                requestHeaders.set(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+
+        ClientHttpResponse response = execution.execute(request, body);
+        HttpStatusCode status = response.getStatusCode();
+        if (cached != null && cached.hasValidators() && status.value() == HttpStatus.NOT_MODIFIED.value()) {
+            HttpHeaders notModifiedHeaders = response.getHeaders();
+            response.close();
+            CachedResponse revalidated = revalidate(cached, notModifiedHeaders, now, acceptEncoding);
+            cache.put(key, revalidated);
+            cache.recordRevalidation();
+            return new CachedClientHttpResponse(revalidated);
+        }
+
+        cache.recordMiss();
+        HttpHeaders responseHeaders = response.getHeaders();
+        if (!isCacheable(status, responseHeaders) || responseHeaders.getContentLength() > maxEntryBytes) {
+            cache.remove(key);
+            return response;
+        }
+        return store(key, response, freshUntil(responseHeaders, now), acceptEncoding);
+    }
+
+    private ClientHttpResponse store(String key, ClientHttpResponse response, long freshUntil, String acceptEncoding)
+            throws IOException {
+        InputStream in = response.getBody();
+        byte[] bytes;
+        try {
+            bytes = in.readNBytes(maxEntryBytes + 1);
+        } catch (IOException e) {
+            response.close();
+            throw e;
+        }
+        if (bytes.length > maxEntryBytes) {
+            // too large after all: hand the caller what was read followed by the rest of the stream
+            cache.remove(key);
+            return new PrefixedClientHttpResponse(response, new SequenceInputStream(new ByteArrayInputStream(bytes), in));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(response.getHeaders());
+        response.close();
+        CachedResponse cached = new CachedResponse(headers, bytes, freshUntil, acceptEncoding);
+        cache.put(key, cached);
+        return new CachedClientHttpResponse(cached);
+    }
+
+    private static boolean isCacheable(HttpStatusCode status, HttpHeaders headers) {
+        if (status.value() != HttpStatus.OK.value()) {
+            return false;
+        }
+        for (String vary : headers.getVary()) {
+            // there's one response per URI, and only its Accept-Encoding is kept to tell variants apart
+            if (!vary.equalsIgnoreCase(HttpHeaders.ACCEPT_ENCODING)) {
+                return false;
+            }
+        }
+        CacheDirectives directives = CacheDirectives.parse(headers.getCacheControl());
+        return !directives.noStore() && (directives.maxAge() > 0
+            || headers.getETag() != null || headers.containsKey(HttpHeaders.LAST_MODIFIED));
+    }
+
+    /**
+     * @return until when a response with the given headers is fresh: its {@code max-age} minus its {@code Age}
+     */
+    private static long freshUntil(HttpHeaders headers, long now) {
+        CacheDirectives directives = CacheDirectives.parse(headers.getCacheControl());
+        if (directives.noCache() || directives.maxAge() <= 0) {
+            return now;
+        }
+        long age = 0;
+        String ageHeader = headers.getFirst("Age");
+        if (ageHeader != null) {
+            try {
+                age = Long.parseLong(ageHeader.trim());
+            } catch (NumberFormatException e) {
+                // treat as not aged
+            }
+        }
+        return now + TimeUnit.SECONDS.toNanos(Math.max(0, directives.maxAge() - age));
+    }
+
+    /**
+     * Updates the cached headers with those of the {@code 304} response, which may carry a new
+     * {@code Cache-Control}, {@code Date} or validator, as described in RFC 9111 section 4.3.4.
+     */
+    private static CachedResponse revalidate(CachedResponse cached, HttpHeaders notModifiedHeaders, long now,
+                                             String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.addAll(cached.getHeaders());
+        for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+            if (!header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                headers.put(header.getKey(), header.getValue());
+            }
+        }
+        return new CachedResponse(headers, cached.getBody(), freshUntil(headers, now), acceptEncoding);
+    }
+
+    /**
+     * The subset of {@code Cache-Control} directives that a private cache needs to act on.
+     */
+    record CacheDirectives(boolean noStore, boolean noCache, long maxAge) {
+
+        private static final CacheDirectives NONE = new CacheDirectives(false, false, -1);
+
+        static CacheDirectives parse(String cacheControl) {
+            if (cacheControl == null || cacheControl.isEmpty()) {
+                return NONE;
+            }
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAge = -1;
+            for (String directive : cacheControl.split(",")) {
+                String trimmed = directive.trim();
+                if (trimmed.equalsIgnoreCase("no-store")) {
+                    noStore = true;
+                } else if (trimmed.equalsIgnoreCase("no-cache") || trimmed.regionMatches(true, 0, "no-cache=", 0, 9)) {
+                    noCache = true;
+                } else if (trimmed.regionMatches(true, 0, "max-age=", 0, 8)) {
+                    try {
+                        maxAge = Long.parseLong(trimmed.substring(8).replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        // invalid max-age means stale, RFC 9111 section 4.2.1
+                        maxAge = 0;
+                    }
+                }
+            }
+            return new CacheDirectives(noStore, noCache, maxAge);
+        }
+    }
+
+    private static class PrefixedClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final InputStream body;
+
+        PrefixedClientHttpResponse(ClientHttpResponse delegate, InputStream body) {
+            this.delegate = delegate;
+            this.body = body;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // ignore, closing the delegate below is what matters
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+}
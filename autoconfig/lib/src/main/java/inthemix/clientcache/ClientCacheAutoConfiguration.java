@@ -0,0 +1,83 @@
+package inthemix.clientcache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adds a {@link CachingClientHttpRequestInterceptor} in front of all other interceptors of RestTemplates and
+ * RestClients, so that cache hits don't go through them at all. All clients share a single {@link ResponseCache}.
+ */
+@AutoConfiguration(before = RestTemplateAutoConfiguration.class,
+    afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
+@ConditionalOnProperty(name = "client.cache.enabled")
+@EnableConfigurationProperties(ClientCacheProperties.class)
+public class ClientCacheAutoConfiguration {
+
+    @Bean
+    ResponseCache clientResponseCache(ClientCacheProperties properties) {
+        return new ResponseCache(properties.getMaxSize().toBytes());
+    }
+
+    @Bean
+    CachingClientHttpRequestInterceptor cachingClientHttpRequestInterceptor(ResponseCache clientResponseCache,
+                                                                            ClientCacheProperties properties) {
+        return new CachingClientHttpRequestInterceptor(clientResponseCache, (int) properties.getMaxEntrySize().toBytes());
+    }
+
+    @Bean
+    RestTemplateCustomizer cachingRestTemplateCustomizer(CachingClientHttpRequestInterceptor interceptor) {
+        return restTemplate -> restTemplate.getInterceptors().add(0, interceptor);
+    }
+
+    @Bean
+    RestClientCustomizer cachingRestClientCustomizer(CachingClientHttpRequestInterceptor interceptor) {
+        return restClientBuilder -> restClientBuilder.requestInterceptors(interceptors -> interceptors.add(0, interceptor));
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterBinder clientResponseCacheMetrics(ResponseCache clientResponseCache) {
+            String requestsDescription = "Cacheable requests, by whether they were served from cache, revalidated or fetched";
+            return registry -> {
+                FunctionCounter.builder("client.cache.requests", clientResponseCache, ResponseCache::getHits)
+                    .tag("result", "hit")
+                    .description(requestsDescription)
+                    .register(registry);
+                FunctionCounter.builder("client.cache.requests", clientResponseCache, ResponseCache::getRevalidations)
+                    .tag("result", "revalidated")
+                    .description(requestsDescription)
+                    .register(registry);
+                FunctionCounter.builder("client.cache.requests", clientResponseCache, ResponseCache::getMisses)
+                    .tag("result", "miss")
+                    .description(requestsDescription)
+                    .register(registry);
+                FunctionCounter.builder("client.cache.evictions", clientResponseCache, ResponseCache::getEvictions)
+                    .description("Responses evicted to make room for others")
+                    .register(registry);
+                Gauge.builder("client.cache.entries", clientResponseCache, ResponseCache::getSize)
+                    .description("Number of cached responses")
+                    .register(registry);
+                Gauge.builder("client.cache.size", clientResponseCache, ResponseCache::getWeight)
+                    .description("Approximate heap used by the cached responses")
+                    .baseUnit("bytes")
+                    .register(registry);
+            };
+        }
+    }
+}
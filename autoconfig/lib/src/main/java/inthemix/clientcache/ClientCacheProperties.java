@@ -0,0 +1,40 @@
+package inthemix.clientcache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties("client.cache")
+public class ClientCacheProperties {
+    /** Whether to cache and conditionally revalidate responses to GET requests made by RestTemplates and RestClients */
+    private boolean enabled = false;
+
+    /** Maximum total size of the cached responses, including their headers */
+    private DataSize maxSize = DataSize.ofMegabytes(10);
+
+    /** Maximum size of a single response body to cache */
+    private DataSize maxEntrySize = DataSize.ofBytes(CachingClientHttpRequestInterceptor.DEFAULT_MAX_ENTRY_BYTES);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public DataSize getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(DataSize maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+}
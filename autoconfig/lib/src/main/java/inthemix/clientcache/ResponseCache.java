@@ -0,0 +1,108 @@
+package inthemix.clientcache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of responses, bounded by the approximate number of bytes its entries occupy rather than by their count,
+ * since bodies vary from a few bytes to megabytes.
+ * <p>
+ * Lookups are short critical sections on a single lock; reading and writing bodies happens outside of it.
+ */
+public class ResponseCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxWeight maximum total size of the cached entries, in bytes
+     */
+    public ResponseCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores the entry, evicting the least recently used entries to make room. Entries larger than the whole
+     * cache are not stored.
+     */
+    synchronized void put(String key, CachedResponse response) {
+        long entryWeight = response.getWeight();
+        CachedResponse previous = entries.remove(key);
+        if (previous != null) {
+            weight -= previous.getWeight();
+        }
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        Iterator<CachedResponse> eldest = entries.values().iterator();
+        while (weight + entryWeight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getWeight();
+            eldest.remove();
+            evictions.increment();
+        }
+        entries.put(key, response);
+        weight += entryWeight;
+    }
+
+    synchronized void remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.getWeight();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordRevalidation() {
+        revalidations.increment();
+    }
+
+    /** @return the number of requests served from the cache without contacting the server */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return the number of cacheable requests that had to be fetched in full */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return the number of requests served from the cache after the server confirmed it's unchanged */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+}
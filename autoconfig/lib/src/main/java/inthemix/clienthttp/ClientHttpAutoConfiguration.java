@@ -0,0 +1,154 @@
+package inthemix.clienthttp;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.NoneNestedConditions;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateBuilderConfigurer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+
+/**
+ * Makes all RestTemplates, RestClients and WebClients share a single {@link HttpClient}, so that connections
+ * are pooled and kept alive across calls and HTTP/2 is used where the server supports it.
+ * <p>
+ * The shared client is the default request factory of the {@code RestTemplateBuilder} and {@code RestClient.Builder},
+ * so a request factory set on a builder still takes precedence, and an application's own {@code RestTemplateBuilder}
+ * bean is left alone.
+ * <p>
+ * The JDK's HttpClient only reads its pool settings from the {@code jdk.httpclient.*} system properties, for all
+ * clients in the JVM, so these are to be set on the command line, like
+ * {@code -Djdk.httpclient.connectionPoolSize=100 -Djdk.httpclient.keepalive.timeout=30}.
+ */
+@AutoConfiguration(before = RestTemplateAutoConfiguration.class,
+    afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
+@ConditionalOnProperty(name = "client.http.enabled")
+@EnableConfigurationProperties(ClientHttpProperties.class)
+public class ClientHttpAutoConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClientHttpAutoConfiguration.class);
+
+    @Bean
+    HttpClient clientHttpClient(ClientHttpProperties properties) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(properties.getVersion())
+            .connectTimeout(properties.getConnectTimeout())
+            // same as the HttpURLConnection-based default factory, which also honours the proxy system properties
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .proxy(ProxySelector.getDefault());
+        if (properties.isVirtualThreads()) {
+            if (JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("http-client-");
+                executor.setVirtualThreads(true);
+                builder.executor(executor);
+            } else {
+                logger.info("Virtual threads require Java 21, using the HttpClient's default executor");
+            }
+        }
+        return builder.build();
+    }
+
+    @Bean
+    InFlightTrackingRequestFactory clientHttpRequestFactory(HttpClient clientHttpClient, ClientHttpProperties properties) {
+        var requestFactory = clientHttpClient.executor()
+            .map(executor -> new JdkClientHttpRequestFactory(clientHttpClient, executor))
+            .orElseGet(() -> new JdkClientHttpRequestFactory(clientHttpClient));
+        requestFactory.setReadTimeout(properties.getReadTimeout());
+        return new InFlightTrackingRequestFactory(requestFactory);
+    }
+
+    /**
+     * Customizers are applied when a {@code RestClient.Builder} is created, so a request factory set on the builder
+     * afterwards replaces this one.
+     */
+    @Bean
+    RestClientCustomizer clientHttpRestClientCustomizer(InFlightTrackingRequestFactory requestFactory) {
+        return restClientBuilder -> restClientBuilder.requestFactory(requestFactory);
+    }
+
+    /**
+     * Takes the place of the builder of {@link RestTemplateAutoConfiguration}, configured the same way but with the
+     * shared client as its request factory. Unlike a {@code RestTemplateCustomizer}, which runs after the builder
+     * has set its request factory, this lets {@code restTemplateBuilder.requestFactory(...)} take precedence.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(RestTemplate.class)
+    @Conditional(NotReactiveWebApplicationCondition.class)
+    static class RestTemplateConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        RestTemplateBuilder restTemplateBuilder(ObjectProvider<RestTemplateBuilderConfigurer> configurer,
+                                                InFlightTrackingRequestFactory requestFactory) {
+            RestTemplateBuilder builder = new RestTemplateBuilder();
+            RestTemplateBuilderConfigurer builderConfigurer = configurer.getIfAvailable();
+            if (builderConfigurer != null) {
+                builder = builderConfigurer.configure(builder);
+            }
+            return builder.requestFactory(() -> requestFactory);
+        }
+    }
+
+    /**
+     * Same as Boot's condition for its {@code RestTemplateBuilder}, which isn't public.
+     */
+    static class NotReactiveWebApplicationCondition extends NoneNestedConditions {
+
+        NotReactiveWebApplicationCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+        private static class ReactiveWebApplication {
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(WebClient.class)
+    static class WebClientConfiguration {
+
+        @Bean
+        WebClientCustomizer clientHttpWebClientCustomizer(HttpClient clientHttpClient) {
+            return webClientBuilder -> webClientBuilder.clientConnector(new JdkClientHttpConnector(clientHttpClient));
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterBinder clientHttpPoolMetrics(InFlightTrackingRequestFactory requestFactory) {
+            return registry -> {
+                Gauge.builder("client.http.requests.in-flight", requestFactory, InFlightTrackingRequestFactory::getInFlightRequests)
+                    .description("Requests executed through the shared HttpClient whose response hasn't been closed yet")
+                    .register(registry);
+            };
+        }
+    }
+}
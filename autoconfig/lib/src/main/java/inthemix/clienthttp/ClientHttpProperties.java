@@ -0,0 +1,64 @@
+package inthemix.clienthttp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@ConfigurationProperties("client.http")
+public class ClientHttpProperties {
+    /** Whether to use a shared, pooled java.net.http.HttpClient for all RestTemplates, RestClients and WebClients */
+    private boolean enabled = false;
+
+    /** Preferred HTTP version: HTTP/2 is negotiated when the server supports it, with fallback to HTTP/1.1 */
+    private HttpClient.Version version = HttpClient.Version.HTTP_2;
+
+    /** Maximum time to wait for a connection to be established */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /** Maximum time to wait for the response headers of a request */
+    private Duration readTimeout = Duration.ofSeconds(10);
+
+    /** Whether to run the client's tasks on virtual threads, when running on Java 21 or later */
+    private boolean virtualThreads = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public HttpClient.Version getVersion() {
+        return version;
+    }
+
+    public void setVersion(HttpClient.Version version) {
+        this.version = version;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+}
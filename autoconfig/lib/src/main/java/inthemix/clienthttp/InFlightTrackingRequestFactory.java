@@ -0,0 +1,119 @@
+package inthemix.clienthttp;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorates a request factory to keep track of the number of requests in flight: a request counts from the moment
+ * it's executed until its response is closed, which is as long as it occupies a pooled connection.
+ */
+public class InFlightTrackingRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public InFlightTrackingRequestFactory(ClientHttpRequestFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new TrackingRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    public int getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    private class TrackingRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest request;
+
+        TrackingRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            inFlight.incrementAndGet();
+            try {
+                return new TrackingResponse(request.execute());
+            } catch (IOException | RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+
+    private class TrackingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private boolean closed;
+
+        TrackingResponse(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+}
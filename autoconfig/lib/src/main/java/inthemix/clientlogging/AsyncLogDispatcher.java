@@ -0,0 +1,159 @@
+package inthemix.clientlogging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Moves the rendering and writing of log messages off the calling thread.
+ * Callers only enqueue a snapshot of the data to log, in the form of a message {@link Supplier}
+ * or a function that completes an SLF4J {@link LoggingEventBuilder};
+ * a single background worker renders the message and writes the SLF4J event.
+ * <p>
+ * Events are kept in a bounded lock-free ring buffer. When that's full, new events are either dropped
+ * (and counted) or the caller waits for room, depending on the {@link OverflowPolicy}.
+ * The caller's MDC is captured with each event, so correlation IDs still end up in the log.
+ */
+public class AsyncLogDispatcher implements AutoCloseable {
+
+    public enum OverflowPolicy {
+        /** Discard the event and increase the dropped events counter */
+        DROP,
+        /** Wait until the worker has made room in the buffer */
+        BLOCK
+    }
+
+    private record LogEvent(Logger logger, Level level, Consumer<LoggingEventBuilder> event, Map<String, String> mdc) { }
+
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final MpscRingBuffer<LogEvent> buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder droppedEvents = new LongAdder();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public AsyncLogDispatcher(int bufferSize, OverflowPolicy overflowPolicy) {
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+        this.overflowPolicy = overflowPolicy;
+        this.worker = new Thread(this::drainLoop, "client-logging-async");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Enqueues the given event for asynchronous logging.
+     *
+     * @return {@code false} if the event was dropped
+     */
+    public boolean dispatch(Logger logger, Level level, Supplier<String> message) {
+        return dispatch(logger, level, builder -> builder.log(message.get()));
+    }
+
+    /**
+     * Enqueues the given event for asynchronous logging.
+     *
+     * @param event function that adds the event's data to the given builder and logs it
+     * @return {@code false} if the event was dropped
+     */
+    public boolean dispatch(Logger logger, Level level, Consumer<LoggingEventBuilder> event) {
+        return dispatch(new LogEvent(logger, level, event, MDC.getCopyOfContextMap()));
+    }
+
+    private boolean dispatch(LogEvent event) {
+        // the worker may have written its last events already
+        if (!running) {
+            droppedEvents.increment();
+            return false;
+        }
+        if (buffer.offer(event)) {
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            while (running) {
+                LockSupport.parkNanos(1_000);
+                if (buffer.offer(event)) {
+                    return true;
+                }
+            }
+        }
+        droppedEvents.increment();
+        return false;
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    public int getQueuedEvents() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    private void drainLoop() {
+        long parkNanos = 1_000;
+        while (running) {
+            if (drain()) {
+                parkNanos = 1_000;
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * @return whether any event was written
+     */
+    private boolean drain() {
+        boolean written = false;
+        LogEvent event;
+        while ((event = buffer.poll()) != null) {
+            written = true;
+            write(event);
+        }
+        return written;
+    }
+
+    private void write(LogEvent event) {
+        if (event.mdc() != null) {
+            MDC.setContextMap(event.mdc());
+        }
+        try {
+            event.event().accept(event.logger().atLevel(event.level()));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write asynchronous log event", e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    /**
+     * Stops the worker after writing all events that were enqueued before. Events dispatched afterwards are dropped.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            // stop waiting, the worker is a daemon and won't keep the JVM alive
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package inthemix.clientlogging;
+
+/**
+ * A bounded prefix of a message body, captured while the body was being consumed.
+ */
+public interface CapturedBody {
+
+    /**
+     * @return array holding the captured bytes, which may be larger than the captured length
+     */
+    byte[] getCapturedBytes();
+
+    int getCapturedLength();
+
+    /**
+     * @return the number of bytes that were consumed, including those that haven't been captured
+     */
+    long getTotalBytes();
+
+    /**
+     * @return whether more data was consumed than has been captured
+     */
+    default boolean isTruncated() {
+        return getTotalBytes() > getCapturedLength();
+    }
+}
@@ -0,0 +1,110 @@
+package inthemix.clientlogging;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Tee-style stream that passes all data through to the reader while keeping a copy of at most
+ * {@code maxBytes} of it. The given callback is invoked once when the stream is closed,
+ * so the captured prefix can be logged without ever holding the full body in memory.
+ */
+public class CapturingInputStream extends FilterInputStream implements CapturedBody {
+
+    private final byte[] captured;
+    private final Consumer<CapturingInputStream> onClose;
+    private int capturedLength;
+    private long totalBytes;
+    private boolean skipped;
+    private boolean closed;
+
+    /**
+     * @param in the stream to read from
+     * @param maxBytes the maximum number of bytes to capture
+     * @param expectedLength the expected content length, or {@code -1} if unknown;
+     *                       used to avoid allocating more capture space than needed
+     * @param onClose callback invoked once when this stream is closed
+     */
+    public CapturingInputStream(InputStream in, int maxBytes, long expectedLength, Consumer<CapturingInputStream> onClose) {
+        super(in);
+        int size = expectedLength >= 0 ? (int) Math.min(maxBytes, expectedLength) : maxBytes;
+        this.captured = new byte[Math.max(size, 0)];
+        this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            if (!skipped && capturedLength < captured.length) {
+                captured[capturedLength++] = (byte) b;
+            }
+            totalBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            if (!skipped) {
+                int toCapture = Math.min(read, captured.length - capturedLength);
+                if (toCapture > 0) {
+                    System.arraycopy(b, off, captured, capturedLength, toCapture);
+                    capturedLength += toCapture;
+                }
+            }
+            totalBytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skippedBytes = super.skip(n);
+        if (skippedBytes > 0) {
+            // whatever comes after a gap is not a contiguous prefix anymore
+            skipped = true;
+            totalBytes += skippedBytes;
+        }
+        return skippedBytes;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            super.close();
+        } finally {
+            onClose.accept(this);
+        }
+    }
+
+    @Override
+    public byte[] getCapturedBytes() {
+        return captured;
+    }
+
+    @Override
+    public int getCapturedLength() {
+        return capturedLength;
+    }
+
+    /**
+     * @return the number of bytes that were read or skipped by the consumer of this stream
+     */
+    @Override
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,43 @@
+package inthemix.clientlogging;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Creates {@link LoggingClientHttpRequestInterceptor}s configured from the {@link RestClientLoggingProperties},
+ * for the RestTemplates, RestClients and WebClients that are being customized.
+ * All interceptors share a single {@link LogSampler}, so the per-host limits apply across all clients.
+ * They also share a single {@link JsonBodyRedactor}, along with its memoized field name matches.
+ */
+public class ClientLoggingInterceptorFactory {
+
+    private final RestClientLoggingProperties properties;
+    private final ObjectProvider<AsyncLogDispatcher> asyncDispatcher;
+    private final ObjectProvider<ExchangeMetrics> exchangeMetrics;
+    private final LogSampler sampler;
+    private final JsonBodyRedactor bodyRedactor;
+
+    public ClientLoggingInterceptorFactory(RestClientLoggingProperties properties,
+                                           ObjectProvider<AsyncLogDispatcher> asyncDispatcher,
+                                           ObjectProvider<ExchangeMetrics> exchangeMetrics) {
+        this.properties = properties;
+        this.asyncDispatcher = asyncDispatcher;
+        this.exchangeMetrics = exchangeMetrics;
+        RestClientLoggingProperties.Sampling sampling = properties.getSampling();
+        this.sampler = sampling.isActive() ? new LogSampler(
+            sampling.getRate(), sampling.getPerHostLimit(), sampling.getBurst(), sampling.getMaxHosts()) : null;
+        RestClientLoggingProperties.Redaction redaction = properties.getRedaction();
+        this.bodyRedactor = redaction.isEnabled() ? new JsonBodyRedactor(
+            redaction.getFieldPatternsToMask(), (int) redaction.getMaxBodySize().toBytes()) : null;
+    }
+
+    public LoggingClientHttpRequestInterceptor create() {
+        var interceptor = new LoggingClientHttpRequestInterceptor(
+            properties.getExcludeHeaders(), (int) properties.getMaxBodyBytes().toBytes());
+        interceptor.setAsyncDispatcher(asyncDispatcher.getIfAvailable());
+        interceptor.setSampler(sampler);
+        interceptor.setAlwaysLogErrors(properties.getSampling().isAlwaysLogErrors());
+        interceptor.setExchangeMetrics(exchangeMetrics.getIfAvailable());
+        interceptor.setBodyRedactor(bodyRedactor);
+        return interceptor;
+    }
+}
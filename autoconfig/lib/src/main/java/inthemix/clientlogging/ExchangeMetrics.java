@@ -0,0 +1,67 @@
+package inthemix.clientlogging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the durations of {@link ExchangeSummary exchanges} in the {@code http.client.exchange} timer,
+ * tagged with the method, target host, status and phase ({@code headers} or {@code complete}).
+ * <p>
+ * To bound the cardinality of the {@code host} tag, only the first {@code maxHosts} distinct hosts
+ * are tagged as such; all others are tagged as {@code other}.
+ */
+public class ExchangeMetrics {
+
+    public static final String METRIC_NAME = "http.client.exchange";
+
+    private static final String OTHER_HOST = "other";
+
+    private record TimerKey(String method, String host, int status, boolean complete) { }
+
+    private final MeterRegistry registry;
+    private final int maxHosts;
+    private final Map<String, String> knownHosts = new ConcurrentHashMap<>();
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public ExchangeMetrics(MeterRegistry registry, int maxHosts) {
+        this.registry = registry;
+        this.maxHosts = maxHosts;
+    }
+
+    public void record(ExchangeSummary exchange) {
+        String method = exchange.method().name();
+        String host = hostTag(exchange.host());
+        timer(new TimerKey(method, host, exchange.status(), false))
+            .record(exchange.timeToHeadersNanos(), TimeUnit.NANOSECONDS);
+        if (exchange.timeToCompleteNanos() >= 0) {
+            timer(new TimerKey(method, host, exchange.status(), true))
+                .record(exchange.timeToCompleteNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String hostTag(String host) {
+        String known = knownHosts.get(host);
+        if (known != null) {
+            return known;
+        }
+        if (knownHosts.size() >= maxHosts) {
+            return OTHER_HOST;
+        }
+        return knownHosts.computeIfAbsent(host, h -> h);
+    }
+
+    private Timer timer(TimerKey key) {
+        Timer timer = timers.get(key);
+        return timer != null ? timer : timers.computeIfAbsent(key, k -> Timer.builder(METRIC_NAME)
+            .description("Duration of outgoing HTTP exchanges until the response headers or the complete body were received")
+            .tag("method", k.method())
+            .tag("host", k.host())
+            .tag("status", k.status() == -1 ? "IO_ERROR" : Integer.toString(k.status()))
+            .tag("phase", k.complete() ? "complete" : "headers")
+            .register(registry));
+    }
+}
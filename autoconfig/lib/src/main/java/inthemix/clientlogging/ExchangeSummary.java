@@ -0,0 +1,26 @@
+package inthemix.clientlogging;
+
+import org.springframework.http.HttpMethod;
+
+import java.net.URI;
+
+/**
+ * Timing and size data of a single request/response exchange.
+ *
+ * @param status the response status, or {@code -1} if no response was received
+ * @param timeToHeadersNanos time from sending the request until the response headers were received
+ * @param timeToCompleteNanos time from sending the request until the response body was closed,
+ *                            or {@code -1} if no response was received
+ * @param requestBytes size of the request body, or {@code -1} if unknown
+ * @param responseBytes number of response body bytes read by the caller
+ * @param exception the exception that prevented receiving a response, if any
+ */
+public record ExchangeSummary(HttpMethod method, URI uri, int status,
+                              long timeToHeadersNanos, long timeToCompleteNanos,
+                              long requestBytes, long responseBytes, Throwable exception) {
+
+    public String host() {
+        String host = uri.getHost();
+        return host != null ? host : "none";
+    }
+}
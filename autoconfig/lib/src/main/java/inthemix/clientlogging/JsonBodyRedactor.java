@@ -0,0 +1,169 @@
+package inthemix.clientlogging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Masks the values of JSON fields whose names match any of the given patterns, in a single streaming pass:
+ * tokens are copied from a Jackson parser over the captured bytes to a generator that writes straight into the
+ * log message, so the body is never materialized as a {@code String} or tree first.
+ * <p>
+ * The values of matching fields are replaced as a whole, including nested objects and arrays.
+ * When the body is cut off, like a truncated capture, everything up to the last complete token is rendered, which
+ * leaves out a number at the very end too, as it may have been longer;
+ * when it's not valid JSON, rendering stops at the error. Either way, nothing that hasn't been checked is logged.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class JsonBodyRedactor {
+
+    public static final String MASK = "******";
+
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+        .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+        .build();
+
+    private static final int MAX_MEMOIZED_FIELD_NAMES = 1000;
+
+    private final List<Pattern> fieldPatternsToMask;
+    private final int maxBodyBytes;
+    private final Map<String, Boolean> matchingFieldNames = new ConcurrentHashMap<>();
+
+    /**
+     * @param fieldPatternsToMask patterns that have to match a field name as a whole for its value to be masked
+     * @param maxBodyBytes bodies larger than this are not parsed and left out of the log altogether
+     */
+    public JsonBodyRedactor(List<Pattern> fieldPatternsToMask, int maxBodyBytes) {
+        this.fieldPatternsToMask = List.copyOf(fieldPatternsToMask);
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Appends the given body to the builder with the values of sensitive fields masked.
+     */
+    public void appendRedacted(StringBuilder builder, byte[] bytes, int length, Charset charset) {
+        if (length > maxBodyBytes) {
+            builder.append("(").append(length).append(" bytes, too large to redact)");
+            return;
+        }
+        // other charsets are decoded first, so offsets are in chars rather than bytes
+        boolean decode = !charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII);
+        String text = decode ? new String(bytes, 0, length, charset) : null;
+        try (JsonParser parser = decode ? FACTORY.createParser(text) : FACTORY.createParser(bytes, 0, length);
+             JsonGenerator generator = FACTORY.createGenerator(new StringBuilderWriter(builder))) {
+            int inputLength = decode ? text.length() : length;
+            try {
+                copyRedacted(parser, generator, inputLength);
+            } catch (JsonEOFException e) {
+                // truncated body: what has been copied so far is complete and checked
+            } catch (IOException e) {
+                generator.flush();
+                // cut off after a comma, say, is reported as a syntax error rather than an end of input
+                if (!isAtEnd(parser, inputLength)) {
+                    builder.append("...(invalid JSON, rest of body not logged)");
+                }
+            }
+        } catch (IOException e) {
+            // can't happen when reading from an array and writing to a StringBuilder
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param inputLength the number of bytes or chars the parser reads
+     */
+    private void copyRedacted(JsonParser parser, JsonGenerator generator, int inputLength) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token.isNumeric() && !parser.getParsingContext().inRoot() && isAtEnd(parser, inputLength)) {
+                // cut off: the number looks complete to the parser, but may have had more digits
+                return;
+            }
+            generator.copyCurrentEvent(parser);
+            if (token == JsonToken.FIELD_NAME && isSensitive(parser.currentName())) {
+                parser.nextToken();
+                parser.skipChildren();
+                generator.writeString(MASK);
+            }
+        }
+    }
+
+    private static boolean isAtEnd(JsonParser parser, int inputLength) {
+        JsonLocation location = parser.currentLocation();
+        long offset = location.getByteOffset() != -1 ? location.getByteOffset() : location.getCharOffset();
+        return offset >= inputLength;
+    }
+
+    boolean isSensitive(String fieldName) {
+        Boolean sensitive = matchingFieldNames.get(fieldName);
+        if (sensitive == null) {
+            sensitive = false;
+            for (Pattern pattern : fieldPatternsToMask) {
+                if (pattern.matcher(fieldName).matches()) {
+                    sensitive = true;
+                    break;
+                }
+            }
+            if (matchingFieldNames.size() >= MAX_MEMOIZED_FIELD_NAMES) {
+                matchingFieldNames.clear();
+            }
+            matchingFieldNames.put(fieldName, sensitive);
+        }
+        return sensitive;
+    }
+
+    int getMemoizedFieldNames() {
+        return matchingFieldNames.size();
+    }
+
+    /**
+     * Lets the generator write into the message being rendered, without a {@code StringWriter}'s synchronization
+     * and intermediate copy.
+     */
+    private static class StringBuilderWriter extends Writer {
+
+        private final StringBuilder builder;
+
+        StringBuilderWriter(StringBuilder builder) {
+            this.builder = builder;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            builder.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string, int offset, int length) {
+            builder.append(string, offset, offset + length);
+        }
+
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package inthemix.clientlogging;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Renders request and response log messages while producing as little garbage as possible:
+ * messages are built in a per-thread reusable {@link StringBuilder}, excluded headers are looked up
+ * case-insensitively without lower-casing each header name, and bodies are decoded with the JDK's fast-path decoders.
+ * <p>
+ * When a {@link JsonBodyRedactor} is set, JSON bodies are rendered through it so that sensitive fields are masked.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class LogMessageRenderer {
+
+    /** Builders that grew beyond this size are not kept around for reuse */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private final Set<String> excludeHeaders;
+    private JsonBodyRedactor bodyRedactor;
+
+    public LogMessageRenderer(Collection<String> excludeHeaders) {
+        TreeSet<String> headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        headers.addAll(excludeHeaders);
+        this.excludeHeaders = headers;
+    }
+
+    /**
+     * @param bodyRedactor redactor to render JSON bodies with, or {@code null} to log bodies as they are
+     */
+    public void setBodyRedactor(JsonBodyRedactor bodyRedactor) {
+        this.bodyRedactor = bodyRedactor;
+    }
+
+    /**
+     * @param bodyCharset the charset to decode the body with, or {@code null} to not log the body
+     */
+    public String renderRequest(HttpMethod method, URI uri, HttpHeaders headers, byte[] body, Charset bodyCharset) {
+        StringBuilder builder = builder();
+        builder.append("Sending method=").append(method.name()).append(" request to url=").append(uri);
+        appendHeaders(builder, headers);
+        if (bodyCharset != null && body.length > 0) {
+            builder.append(": body:[");
+            appendBody(builder, headers, body, body.length, bodyCharset);
+            builder.append(']');
+        }
+        return release(builder);
+    }
+
+    /**
+     * @param capturedBody the captured prefix of the response body, or {@code null} if the body wasn't captured
+     * @param bodyCharset the charset to decode the body with, or {@code null} if the body is not text
+     */
+    public String renderResponse(HttpMethod method, URI uri, int status, String statusText, HttpHeaders headers,
+                                 CapturedBody capturedBody, Charset bodyCharset) {
+        StringBuilder builder = builder();
+        builder.append("Received status=\"").append(status).append(' ').append(statusText)
+            .append("\" response for method=").append(method.name())
+            .append(" request to url=").append(uri);
+        appendHeaders(builder, headers);
+
+        long contentLength = headers.getContentLength();
+        if (bodyCharset != null && capturedBody != null && capturedBody.getTotalBytes() > 0) {
+            builder.append(": body:[");
+            appendBody(builder, headers, capturedBody.getCapturedBytes(), capturedBody.getCapturedLength(), bodyCharset);
+            if (capturedBody.isTruncated()) {
+                builder.append("...(truncated, ").append(capturedBody.getTotalBytes()).append(" bytes read)");
+            }
+            builder.append(']');
+        } else if (contentLength != 0) {
+            if (contentLength == -1) {
+                builder.append(" with content of unknown length");
+            } else {
+                builder.append(" with content of length ").append(contentLength);
+            }
+            MediaType contentType = headers.getContentType();
+            if (contentType != null) {
+                builder.append(" and content type ").append(contentType);
+            } else {
+                builder.append(" and unknown content type");
+            }
+        }
+        return release(builder);
+    }
+
+    public boolean isExcluded(String headerName) {
+        return excludeHeaders.contains(headerName);
+    }
+
+    private void appendHeaders(StringBuilder builder, HttpHeaders headers) {
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            String name = entry.getKey();
+            if (isExcluded(name)) {
+                continue;
+            }
+            builder.append(first ? ": headers:['" : ", '").append(name).append("'='");
+            List<String> values = entry.getValue();
+            for (int i = 0, size = values.size(); i < size; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(values.get(i));
+            }
+            builder.append('\'');
+            first = false;
+        }
+        if (!first) {
+            builder.append(']');
+        }
+    }
+
+    private void appendBody(StringBuilder builder, HttpHeaders headers, byte[] bytes, int length, Charset charset) {
+        if (bodyRedactor != null && isJson(headers.getContentType())) {
+            bodyRedactor.appendRedacted(builder, bytes, length, charset);
+        } else {
+            appendDecoded(builder, bytes, length, charset);
+        }
+    }
+
+    private static boolean isJson(MediaType contentType) {
+        return contentType != null
+            && ("json".equals(contentType.getSubtype()) || contentType.getSubtype().endsWith("+json"));
+    }
+
+    /**
+     * Decodes the given bytes into the builder. Going through an intermediate {@code String} costs one copy
+     * of the body, but the JDK's intrinsified decoders are several times faster than decoding by hand.
+     */
+    static void appendDecoded(StringBuilder builder, byte[] bytes, int length, Charset charset) {
+        builder.append(new String(bytes, 0, length, charset));
+    }
+
+    private static StringBuilder builder() {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static String release(StringBuilder builder) {
+        String message = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return message;
+    }
+}
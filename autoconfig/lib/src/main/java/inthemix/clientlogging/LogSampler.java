@@ -0,0 +1,83 @@
+package inthemix.clientlogging;
+
+import org.springframework.http.HttpRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which exchanges get logged at {@code DEBUG} level, to bound the cost of having
+ * request/response logging enabled under production load.
+ * <p>
+ * An exchange is logged when it's selected by the global sample rate <em>and</em> its target host
+ * still has budget left. The per-host budget is a lock-free token bucket, implemented as the
+ * generic cell rate algorithm: a single atomic "theoretical arrival time" per host.
+ * To bound memory, at most {@code maxHosts} hosts get their own bucket; all others share one.
+ */
+public class LogSampler {
+
+    private final double sampleRate;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxHosts;
+    private final LongSupplier nanoClock;
+    private final Map<String, AtomicLong> hostBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflowBucket = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param sampleRate fraction of exchanges to log, between 0 and 1
+     * @param perHostLimit maximum number of exchanges to log per second per host, or 0 for no limit
+     * @param burst number of exchanges per host that may be logged in a burst above the per-second limit
+     * @param maxHosts maximum number of hosts to track a separate budget for
+     */
+    public LogSampler(double sampleRate, double perHostLimit, int burst, int maxHosts) {
+        this(sampleRate, perHostLimit, burst, maxHosts, System::nanoTime);
+    }
+
+    LogSampler(double sampleRate, double perHostLimit, int burst, int maxHosts, LongSupplier nanoClock) {
+        this.sampleRate = sampleRate;
+        this.emissionIntervalNanos = perHostLimit > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perHostLimit) : 0;
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(1, burst);
+        this.maxHosts = maxHosts;
+        this.nanoClock = nanoClock;
+    }
+
+    public boolean sample(HttpRequest request) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        return emissionIntervalNanos == 0 || tryAcquire(bucketFor(request.getURI().getHost()));
+    }
+
+    private AtomicLong bucketFor(String host) {
+        if (host == null) {
+            return overflowBucket;
+        }
+        AtomicLong bucket = hostBuckets.get(host);
+        if (bucket == null) {
+            if (hostBuckets.size() >= maxHosts) {
+                return overflowBucket;
+            }
+            bucket = hostBuckets.computeIfAbsent(host, h -> new AtomicLong(Long.MIN_VALUE));
+        }
+        return bucket;
+    }
+
+    private boolean tryAcquire(AtomicLong theoreticalArrivalTime) {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long tat = theoreticalArrivalTime.get();
+            long next = (tat == Long.MIN_VALUE || tat - now < 0 ? now : tat) + emissionIntervalNanos;
+            if (next - now > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -2,48 +2,75 @@ package inthemix.clientlogging;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.slf4j.spi.LoggingEventBuilder;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
-import org.springframework.util.StreamUtils;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Collection;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
-
-import static java.util.stream.Collectors.toSet;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Allows logging outgoing requests and the corresponding responses.
- * Requires the use of a {@link org.springframework.http.client.BufferingClientHttpRequestFactory} to log
- * the body of received responses!
+ * Response bodies are not buffered: when a response is logged, at most {@code maxBodyBytes} of its body
+ * are captured while the caller reads it, and the response is logged once the body stream is closed.
  * <p>
  * Logging is enabled by either setting the log level of the appropriate SLF4J Logger to {@code DEBUG},
  * or per request by setting a {@code X-Log-Request} or {@code X-Log-Response} request header to @{code true}.
  * The latter will cause logging to happen at the {@code INFO} rather than the {@code DEBUG} level.
+ * <p>
+ * When a {@link LogSampler} is set, only sampled exchanges are logged at {@code DEBUG} level.
+ * Exchanges for which logging was explicitly requested through the headers are always logged,
+ * as are responses with an error status unless {@code alwaysLogErrors} has been disabled.
+ * <p>
+ * Each exchange is timed: when the {@code exchange} logger is at {@code DEBUG} level, a single event is logged
+ * per exchange once the response body has been closed, carrying the method, url, status, time to headers,
+ * time to body completion and byte counts as key-value pairs. When {@link ExchangeMetrics} are set,
+ * the durations are recorded as metrics as well.
+ * <p>
+ * When a {@link JsonBodyRedactor} is set, the values of sensitive fields in JSON bodies are masked in the log.
+ * <p>
+ * When an {@link AsyncLogDispatcher} is set, the calling thread only snapshots the data to log
+ * and the messages are rendered and written by the dispatcher's background worker.
  */
 public class LoggingClientHttpRequestInterceptor implements ClientHttpRequestInterceptor {
 
     public static final String LOG_REQUEST_REQUEST_HEADER  = "X-Log-Request";
     public static final String LOG_RESPONSE_REQUEST_HEADER = "X-Log-Response";
+    public static final int DEFAULT_MAX_BODY_BYTES = 8 * 1024;
 
     protected final Logger requestLogger;
     protected final Logger responseLogger;
+    protected final Logger exchangeLogger = LoggerFactory.getLogger("inthemix.client.RestTracing.exchange");
 
-    private final Set<String> loggingExcludeHeaders;
+    private final LogMessageRenderer renderer;
+    private final int maxBodyBytes;
+    private AsyncLogDispatcher asyncDispatcher;
+    private LogSampler sampler;
+    private boolean alwaysLogErrors = true;
+    private ExchangeMetrics exchangeMetrics;
 
     public LoggingClientHttpRequestInterceptor(Collection<String> loggingExcludeHeaders) {
+        this(loggingExcludeHeaders, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param maxBodyBytes the maximum number of bytes of a response body to include in the log
+     */
+    public LoggingClientHttpRequestInterceptor(Collection<String> loggingExcludeHeaders, int maxBodyBytes) {
         this(LoggerFactory.getLogger("inthemix.client.RestTracing.sent"),
             LoggerFactory.getLogger("inthemix.client.RestTracing.received"),
-            loggingExcludeHeaders);
+            loggingExcludeHeaders, maxBodyBytes);
     }
 
     /**
@@ -51,99 +78,252 @@ public class LoggingClientHttpRequestInterceptor implements ClientHttpRequestInt
      * @param responseLogger the logger used to log received responses
      */
     public LoggingClientHttpRequestInterceptor(Logger requestLogger, Logger responseLogger, Collection<String> loggingExcludeHeaders) {
+        this(requestLogger, responseLogger, loggingExcludeHeaders, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param requestLogger the logger used to log sent requests
+     * @param responseLogger the logger used to log received responses
+     * @param maxBodyBytes the maximum number of bytes of a response body to include in the log
+     */
+    public LoggingClientHttpRequestInterceptor(Logger requestLogger, Logger responseLogger,
+                                               Collection<String> loggingExcludeHeaders, int maxBodyBytes) {
         this.requestLogger = requestLogger;
         this.responseLogger = responseLogger;
-        this.loggingExcludeHeaders = loggingExcludeHeaders.stream().map(String::toLowerCase).collect(toSet());
+        this.renderer = new LogMessageRenderer(loggingExcludeHeaders);
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * @param asyncDispatcher dispatcher used to render and write log messages off the calling thread,
+     *                        or {@code null} to log synchronously
+     */
+    public void setAsyncDispatcher(AsyncLogDispatcher asyncDispatcher) {
+        this.asyncDispatcher = asyncDispatcher;
+    }
+
+    /**
+     * @param sampler sampler that selects the exchanges to log at {@code DEBUG} level, or {@code null} to log all
+     */
+    public void setSampler(LogSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * @param alwaysLogErrors whether responses with a 4xx or 5xx status are logged at {@code DEBUG} level
+     *                        even when the exchange was not sampled
+     */
+    public void setAlwaysLogErrors(boolean alwaysLogErrors) {
+        this.alwaysLogErrors = alwaysLogErrors;
+    }
+
+    /**
+     * @param bodyRedactor redactor that masks sensitive fields in logged JSON bodies,
+     *                     or {@code null} to log bodies as they are
+     */
+    public void setBodyRedactor(JsonBodyRedactor bodyRedactor) {
+        renderer.setBodyRedactor(bodyRedactor);
+    }
+
+    /**
+     * @param exchangeMetrics metrics to record the exchange durations in, or {@code null} to not record them
+     */
+    public void setExchangeMetrics(ExchangeMetrics exchangeMetrics) {
+        this.exchangeMetrics = exchangeMetrics;
     }
 
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        logRequest(request, body);
-        ClientHttpResponse response = execution.execute(request, body);
-        logResponse(request, response);
-        return response;
+        boolean sampled = isSampled(request);
+        logRequest(request, body, sampled);
+        long startNanos = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            if (isExchangeTracked(sampled)) {
+                completeExchange(new ExchangeSummary(request.getMethod(), request.getURI(), -1,
+                    System.nanoTime() - startNanos, -1, body.length, 0, e), sampled);
+            }
+            throw e;
+        }
+        long timeToHeadersNanos = System.nanoTime() - startNanos;
+        HttpStatusCode status = statusOf(response);
+        return logResponse(request, response, status, sampled, capturedBody -> completeExchange(new ExchangeSummary(
+            request.getMethod(), request.getURI(), status != null ? status.value() : -1, timeToHeadersNanos,
+            System.nanoTime() - startNanos, body.length, capturedBody != null ? capturedBody.getTotalBytes() : 0, null),
+            sampled));
+    }
+
+    /**
+     * Determines once per exchange whether it may be logged at {@code DEBUG} level.
+     * Only consults the sampler when debug logging is enabled, so no budget is spent otherwise.
+     */
+    protected boolean isSampled(HttpRequest request) {
+        return sampler == null
+            || (requestLogger.isDebugEnabled() || responseLogger.isDebugEnabled() || exchangeLogger.isDebugEnabled())
+                && sampler.sample(request);
     }
 
-    protected void logRequest(HttpRequest request, byte[] body) {
-        if (requestLogger.isDebugEnabled() && !noLoggingRequested(request, LOG_REQUEST_REQUEST_HEADER)) {
-            requestLogger.debug(constructRequestLogMsg(request, body));
+    protected void logRequest(HttpRequest request, byte[] body, boolean sampled) {
+        if (sampled && requestLogger.isDebugEnabled() && !noLoggingRequested(request, LOG_REQUEST_REQUEST_HEADER)) {
+            log(requestLogger, Level.DEBUG, () -> constructRequestLogMsg(request, body));
         } else if (requestLogger.isInfoEnabled() && loggingRequested(request, LOG_REQUEST_REQUEST_HEADER)) {
-            requestLogger.info(constructRequestLogMsg(request, body));
+            log(requestLogger, Level.INFO, () -> constructRequestLogMsg(request, body));
         }
     }
 
     protected String constructRequestLogMsg(HttpRequest request, byte[] body) {
-        StringBuilder builder = new StringBuilder("Sending method=").append(request.getMethod())
-                .append(" request to url=").append(request.getURI());
+        HttpHeaders headers = request.getHeaders();
+        Charset bodyCharset = hasTextBody(headers) ? determineCharset(headers) : null;
+        return renderer.renderRequest(request.getMethod(), request.getURI(), headers, body, bodyCharset);
+    }
+
+    /**
+     * Logs the given response, or arranges for it to be logged once its body has been read.
+     *
+     * @param status the response status, or {@code null} if it couldn't be determined
+     * @param exchangeCompletion callback to invoke when the response body has been closed, which receives
+     *                           the stream that counted the body bytes; only invoked when the exchange is tracked
+     * @return the response to hand to the caller, which might wrap the given one
+     */
+    protected ClientHttpResponse logResponse(HttpRequest request, ClientHttpResponse response, HttpStatusCode status,
+                                             boolean sampled, Consumer<CapturedBody> exchangeCompletion) {
+        Level level = responseLogLevel(request, status, sampled);
+        HttpHeaders responseHeaders = response.getHeaders();
+        boolean captureBody = level != null && maxBodyBytes > 0
+            && responseHeaders.getContentLength() != 0 && hasTextBody(responseHeaders);
+        boolean trackExchange = isExchangeTracked(sampled);
+        if (level != null && !captureBody) {
+            logResponse(level, request, response, null);
+        }
+        if (!captureBody && !trackExchange) {
+            return response;
+        }
+        return new LoggingClientHttpResponse(response, captureBody ? maxBodyBytes : 0, capturedBody -> {
+            if (captureBody) {
+                logResponse(level, request, response, capturedBody);
+            }
+            if (trackExchange) {
+                exchangeCompletion.accept(capturedBody);
+            }
+        });
+    }
+
+    /**
+     * @return the level to log the response at, or {@code null} if it shouldn't be logged
+     */
+    Level responseLogLevel(HttpRequest request, HttpStatusCode status, boolean sampled) {
+        if (responseLogger.isDebugEnabled() && !noLoggingRequested(request, LOG_RESPONSE_REQUEST_HEADER)
+            && (sampled || alwaysLogErrors && (status == null || status.isError()))) {
+            return Level.DEBUG;
+        } else if (responseLogger.isInfoEnabled() && loggingRequested(request, LOG_RESPONSE_REQUEST_HEADER)) {
+            return Level.INFO;
+        }
+        return null;
+    }
 
-        String headerString = request.getHeaders().entrySet().stream()
-            .filter(entry -> !loggingExcludeHeaders.contains(entry.getKey().toLowerCase()))
-            .map(entry -> String.format("'%s'='%s'", entry.getKey(), String.join(",", entry.getValue())))
-            .collect(Collectors.joining(", "));
+    int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    boolean isExchangeTracked(boolean sampled) {
+        return exchangeMetrics != null || sampled && exchangeLogger.isDebugEnabled();
+    }
 
-        if (!headerString.isEmpty()) {
-            builder.append(": headers:[").append(headerString).append("]");
+    void completeExchange(ExchangeSummary exchange, boolean sampled) {
+        if (exchangeMetrics != null) {
+            exchangeMetrics.record(exchange);
         }
+        if (sampled && exchangeLogger.isDebugEnabled()) {
+            log(exchangeLogger, Level.DEBUG, event -> event
+                .addKeyValue("method", exchange.method().name())
+                .addKeyValue("host", exchange.host())
+                .addKeyValue("status", exchange.status())
+                .addKeyValue("timeToHeadersMs", exchange.timeToHeadersNanos() / 1_000_000.0)
+                .addKeyValue("timeToCompleteMs", exchange.timeToCompleteNanos() / 1_000_000.0)
+                .addKeyValue("requestBytes", exchange.requestBytes())
+                .addKeyValue("responseBytes", exchange.responseBytes())
+                .setCause(exchange.exception())
+                .log(() -> constructExchangeLogMsg(exchange)));
+        }
+    }
 
-        if (body.length > 0 && hasTextBody(request.getHeaders())) {
-            String bodyText = new String(body, determineCharset(request.getHeaders()));
-            builder.append(": body:[").append(bodyText).append("]");
+    protected String constructExchangeLogMsg(ExchangeSummary exchange) {
+        StringBuilder builder = new StringBuilder("Completed method=").append(exchange.method().name())
+            .append(" request to url=").append(exchange.uri());
+        if (exchange.status() == -1) {
+            builder.append(" without response after ").append(exchange.timeToHeadersNanos() / 1_000_000.0).append(" ms");
+        } else {
+            builder.append(" with status=").append(exchange.status())
+                .append(" headers after ").append(exchange.timeToHeadersNanos() / 1_000_000.0).append(" ms")
+                .append(", body after ").append(exchange.timeToCompleteNanos() / 1_000_000.0).append(" ms");
+        }
+        if (exchange.requestBytes() >= 0) {
+            builder.append(", sent ").append(exchange.requestBytes()).append(" bytes");
         }
-        return builder.toString();
+        return builder.append(", received ").append(exchange.responseBytes()).append(" bytes").toString();
     }
 
-    protected void logResponse(HttpRequest request, ClientHttpResponse response) {
-        if (responseLogger.isDebugEnabled() && !noLoggingRequested(request, LOG_RESPONSE_REQUEST_HEADER)) {
-            try {
-                responseLogger.debug(constructResponseLogMsg(request, response));
-            } catch (IOException e) {
-                responseLogger.warn("Failed to log response for {} request to {}", request.getMethod(), request.getURI(), e);
-            }
-        } else if (responseLogger.isInfoEnabled() && loggingRequested(request, LOG_RESPONSE_REQUEST_HEADER)) {
-            try {
-                responseLogger.info(constructResponseLogMsg(request, response));
-            } catch (IOException e) {
-                responseLogger.warn("Failed to log response for {} request to {}", request.getMethod(), request.getURI(), e);
-            }
+    private HttpStatusCode statusOf(ClientHttpResponse response) {
+        try {
+            return response.getStatusCode();
+        } catch (IOException e) {
+            return null;
         }
     }
 
-    protected String constructResponseLogMsg(HttpRequest request, ClientHttpResponse response) throws IOException {
-        StringBuilder builder = new StringBuilder("Received status=\"")
-            .append(response.getStatusCode().value()).append(" ").append(response.getStatusText())
-            .append("\" response for method=").append(request.getMethod())
-            .append(" request to url=").append(request.getURI());
-        HttpHeaders responseHeaders = response.getHeaders();
-        long contentLength = responseHeaders.getContentLength();
+    private void logResponse(Level level, HttpRequest request, ClientHttpResponse response, CapturedBody capturedBody) {
+        HttpStatusCode status;
+        String statusText;
+        try {
+            status = response.getStatusCode();
+            statusText = response.getStatusText();
+        } catch (IOException e) {
+            responseLogger.warn("Failed to log response for {} request to {}", request.getMethod(), request.getURI(), e);
+            return;
+        }
+        logResponse(level, request, status, statusText, response.getHeaders(), capturedBody);
+    }
 
-        String headerString = response.getHeaders().entrySet().stream()
-            .filter(entry -> !loggingExcludeHeaders.contains(entry.getKey()))
-            .map(entry -> String.format("'%s'='%s'", entry.getKey(), String.join(",", entry.getValue())))
-            .collect(Collectors.joining(", "));
+    void logResponse(Level level, HttpRequest request, HttpStatusCode status, String statusText,
+                     HttpHeaders responseHeaders, CapturedBody capturedBody) {
+        log(responseLogger, level,
+            () -> constructResponseLogMsg(request, status, statusText, responseHeaders, capturedBody));
+    }
 
-        if (!headerString.isEmpty()) {
-            builder.append(": headers:[").append(headerString).append("]");
+    /**
+     * Writes the message provided by the given supplier, either directly or through the async dispatcher.
+     * The supplier must only reference data that remains valid after the exchange has completed.
+     */
+    protected void log(Logger logger, Level level, Supplier<String> message) {
+        if (asyncDispatcher != null) {
+            asyncDispatcher.dispatch(logger, level, message);
+        } else {
+            logger.atLevel(level).log(message.get());
         }
+    }
 
-        if (contentLength != 0) {
-            if (hasTextBody(responseHeaders) && !isMockedResponse(response)) {
-                String bodyText = StreamUtils.copyToString(response.getBody(), determineCharset(responseHeaders));
-                builder.append(": body:[").append(bodyText).append("]");
-            } else {
-                if (contentLength == -1) {
-                    builder.append(" with content of unknown length");
-                } else {
-                    builder.append(" with content of length ").append(contentLength);
-                }
-                MediaType contentType = responseHeaders.getContentType();
-                if (contentType != null) {
-                    builder.append(" and content type ").append(contentType);
-                } else {
-                    builder.append(" and unknown content type");
-                }
-            }
+    /**
+     * Variant of {@link #log(Logger, Level, Supplier)} for events that carry more than a message.
+     */
+    protected void log(Logger logger, Level level, Consumer<LoggingEventBuilder> event) {
+        if (asyncDispatcher != null) {
+            asyncDispatcher.dispatch(logger, level, event);
+        } else {
+            event.accept(logger.atLevel(level));
         }
-        return builder.toString();
+    }
+
+    /**
+     * @param capturedBody the captured prefix of the response body,
+     *                     or {@code null} if the body wasn't captured or read
+     */
+    protected String constructResponseLogMsg(HttpRequest request, HttpStatusCode status, String statusText,
+                                             HttpHeaders responseHeaders, CapturedBody capturedBody) {
+        Charset bodyCharset = hasTextBody(responseHeaders) ? determineCharset(responseHeaders) : null;
+        return renderer.renderResponse(request.getMethod(), request.getURI(), status.value(), statusText,
+            responseHeaders, capturedBody, bodyCharset);
     }
 
     protected boolean hasTextBody(HttpHeaders headers) {
@@ -184,8 +364,4 @@ public class LoggingClientHttpRequestInterceptor implements ClientHttpRequestInt
         return "false".equalsIgnoreCase(request.getHeaders().getFirst(header));
     }
 
-    private boolean isMockedResponse(ClientHttpResponse response) {
-        return "MockClientHttpResponse".equals(response.getClass().getSimpleName());
-    }
-
 }
@@ -0,0 +1,74 @@
+package inthemix.clientlogging;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Response wrapper that captures a bounded prefix of the body while the caller streams it.
+ * The callback is invoked exactly once, when either the body stream or the response is closed;
+ * it receives {@code null} when the body was never requested.
+ */
+class LoggingClientHttpResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse delegate;
+    private final int maxBodyBytes;
+    private final Consumer<? super CapturingInputStream> onComplete;
+    private CapturingInputStream body;
+    private boolean completed;
+
+    LoggingClientHttpResponse(ClientHttpResponse delegate, int maxBodyBytes, Consumer<? super CapturingInputStream> onComplete) {
+        this.delegate = delegate;
+        this.maxBodyBytes = maxBodyBytes;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    public HttpStatusCode getStatusCode() throws IOException {
+        return delegate.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return delegate.getStatusText();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        if (body == null) {
+            body = new CapturingInputStream(delegate.getBody(), maxBodyBytes,
+                delegate.getHeaders().getContentLength(), this::complete);
+        }
+        return body;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (body != null) {
+                body.close();
+            }
+        } catch (IOException e) {
+            // ignore, closing the delegate below is what matters
+        } finally {
+            complete(body);
+            delegate.close();
+        }
+    }
+
+    private void complete(CapturingInputStream capturedBody) {
+        if (!completed) {
+            completed = true;
+            onComplete.accept(capturedBody);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package inthemix.clientlogging;
+
+import org.slf4j.event.Level;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ExchangeFilterFunction} that brings the logging of {@link LoggingClientHttpRequestInterceptor}
+ * to the {@link org.springframework.web.reactive.function.client.WebClient}, using the same loggers,
+ * sampling, async dispatching and exchange metrics as the given interceptor.
+ * <p>
+ * The response body is never aggregated: the {@link DataBuffer}s are observed as they flow to the subscriber,
+ * and only a bounded prefix of the body is copied for logging. Request bodies are written by a
+ * {@link org.springframework.web.reactive.function.BodyInserter} and are therefore not logged, only the headers.
+ * <p>
+ * Note that rendering happens on the thread that completes the body, typically an event loop thread,
+ * so consider enabling async logging with the {@code DROP} overflow policy for reactive clients.
+ */
+public class LoggingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final LoggingClientHttpRequestInterceptor interceptor;
+
+    public LoggingExchangeFilterFunction(LoggingClientHttpRequestInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        HttpRequest httpRequest = new ClientRequestAdapter(request);
+        boolean sampled = interceptor.isSampled(httpRequest);
+        interceptor.logRequest(httpRequest, NO_BODY, sampled);
+        long startNanos = System.nanoTime();
+        return next.exchange(request)
+            .doOnError(e -> {
+                if (interceptor.isExchangeTracked(sampled)) {
+                    interceptor.completeExchange(new ExchangeSummary(request.method(), request.url(), -1,
+                        System.nanoTime() - startNanos, -1, request.headers().getContentLength(), 0, e), sampled);
+                }
+            })
+            .map(response -> logResponse(httpRequest, response, sampled, startNanos));
+    }
+
+    private ClientResponse logResponse(HttpRequest request, ClientResponse response, boolean sampled, long startNanos) {
+        long timeToHeadersNanos = System.nanoTime() - startNanos;
+        HttpStatusCode status = response.statusCode();
+        Level level = interceptor.responseLogLevel(request, status, sampled);
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        boolean captureBody = level != null && interceptor.getMaxBodyBytes() > 0
+            && headers.getContentLength() != 0 && interceptor.hasTextBody(headers);
+        boolean trackExchange = interceptor.isExchangeTracked(sampled);
+        HttpStatus knownStatus = HttpStatus.resolve(status.value());
+        String statusText = knownStatus != null ? knownStatus.getReasonPhrase() : "";
+
+        if (level != null && !captureBody) {
+            interceptor.logResponse(level, request, status, statusText, headers, null);
+        }
+        if (!captureBody && !trackExchange) {
+            return response;
+        }
+        DataBufferCapture capture = new DataBufferCapture(
+            captureBody ? interceptor.getMaxBodyBytes() : 0, headers.getContentLength());
+        return response.mutate()
+            .body(body -> body
+                .doOnNext(capture::capture)
+                .doFinally(signal -> {
+                    if (captureBody) {
+                        interceptor.logResponse(level, request, status, statusText, headers, capture);
+                    }
+                    if (trackExchange) {
+                        interceptor.completeExchange(new ExchangeSummary(request.getMethod(), request.getURI(),
+                            status.value(), timeToHeadersNanos, System.nanoTime() - startNanos,
+                            request.getHeaders().getContentLength(), capture.getTotalBytes(), null), sampled);
+                    }
+                }))
+            .build();
+    }
+
+    /**
+     * Copies at most {@code maxBytes} from the buffers it observes, without changing their read positions.
+     */
+    private static class DataBufferCapture implements CapturedBody {
+
+        private final byte[] captured;
+        private final ByteBuffer target;
+        private long totalBytes;
+
+        DataBufferCapture(int maxBytes, long expectedLength) {
+            int size = expectedLength >= 0 ? (int) Math.min(maxBytes, expectedLength) : maxBytes;
+            this.captured = new byte[size];
+            this.target = ByteBuffer.wrap(captured);
+        }
+
+        void capture(DataBuffer buffer) {
+            int readable = buffer.readableByteCount();
+            int toCapture = Math.min(readable, target.remaining());
+            if (toCapture > 0) {
+                buffer.toByteBuffer(buffer.readPosition(), target, target.position(), toCapture);
+                target.position(target.position() + toCapture);
+            }
+            totalBytes += readable;
+        }
+
+        @Override
+        public byte[] getCapturedBytes() {
+            return captured;
+        }
+
+        @Override
+        public int getCapturedLength() {
+            return target.position();
+        }
+
+        @Override
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+    }
+
+    private record ClientRequestAdapter(ClientRequest request) implements HttpRequest {
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.method();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.url();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.headers();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package inthemix.clientlogging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer ring buffer,
+ * based on Dmitry Vyukov's bounded MPMC queue: every slot carries a sequence number that tells
+ * producers and the consumer whether the slot is free to write or ready to read.
+ */
+class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private volatile long consumerIndex; // only written by the single consumer
+
+    /**
+     * @param capacity requested capacity, rounded up to the next power of two
+     */
+    MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return {@code false} if the buffer is full
+     */
+    boolean offer(E element) {
+        long index;
+        while (true) {
+            index = producerIndex.get();
+            int slot = (int) index & mask;
+            long diff = sequences.get(slot) - index;
+            if (diff == 0) {
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.set(slot, index + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            // else: another producer claimed this slot, retry with the updated index
+        }
+    }
+
+    /**
+     * Must only be called from the single consumer thread.
+     *
+     * @return the next element, or {@code null} if the buffer is empty
+     */
+    E poll() {
+        int slot = (int) consumerIndex & mask;
+        if (sequences.get(slot) != consumerIndex + 1) {
+            return null;
+        }
+        E element = elements.get(slot);
+        elements.lazySet(slot, null);
+        sequences.set(slot, consumerIndex + mask + 1);
+        consumerIndex++;
+        return element;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return an estimate of the number of buffered elements
+     */
+    int size() {
+        long size = producerIndex.get() - consumerIndex;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+}
@@ -1,46 +1,85 @@
 package inthemix.clientlogging;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestClientCustomizer;
 import org.springframework.boot.web.client.RestTemplateCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
-import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.InterceptingClientHttpRequestFactory;
-import org.springframework.util.ReflectionUtils;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
 
-import java.lang.reflect.Field;
-
-@AutoConfiguration(before = RestTemplateAutoConfiguration.class)
+@AutoConfiguration(before = RestTemplateAutoConfiguration.class,
+    afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @EnableConfigurationProperties(RestClientLoggingProperties.class)
 public class RestClientLoggingAutoConfiguration {
 
     @Bean @ConditionalOnProperty(name = "client.logging.enabled", matchIfMissing = true)
-    RestTemplateCustomizer loggingRestTemplateCustomizer(RestClientLoggingProperties properties) {
-        return restTemplate -> {
-            ClientHttpRequestFactory requestFactory = extractRequestFactory(restTemplate);
-            if (!(requestFactory instanceof BufferingClientHttpRequestFactory)) {
-                restTemplate.setRequestFactory(new BufferingClientHttpRequestFactory(requestFactory));
-            }
-            restTemplate.getInterceptors().add(new LoggingClientHttpRequestInterceptor(properties.getExcludeHeaders()));
-        };
+    RestTemplateCustomizer loggingRestTemplateCustomizer(ClientLoggingInterceptorFactory interceptorFactory) {
+        // no BufferingClientHttpRequestFactory needed: the interceptor captures a bounded prefix of the body
+        return restTemplate -> restTemplate.getInterceptors().add(interceptorFactory.create());
+    }
+
+    @Bean @ConditionalOnProperty(name = "client.logging.enabled", matchIfMissing = true)
+    RestClientCustomizer loggingRestClientCustomizer(ClientLoggingInterceptorFactory interceptorFactory) {
+        return restClientBuilder -> restClientBuilder.requestInterceptor(interceptorFactory.create());
+    }
+
+    @Bean
+    ClientLoggingInterceptorFactory clientLoggingInterceptorFactory(RestClientLoggingProperties properties,
+                                                                    ObjectProvider<AsyncLogDispatcher> asyncDispatcher,
+                                                                    ObjectProvider<ExchangeMetrics> exchangeMetrics) {
+        return new ClientLoggingInterceptorFactory(properties, asyncDispatcher, exchangeMetrics);
+    }
+
+    @Bean @ConditionalOnProperty(name = "client.logging.async.enabled")
+    AsyncLogDispatcher clientLoggingAsyncDispatcher(RestClientLoggingProperties properties) {
+        RestClientLoggingProperties.Async async = properties.getAsync();
+        return new AsyncLogDispatcher(async.getBufferSize(), async.getOverflowPolicy());
     }
 
-    /**
-     * Extracts the request factory from the given template,
-     * unwrapping an {@link InterceptingClientHttpRequestFactory} if present.
-     */
-    private ClientHttpRequestFactory extractRequestFactory(RestTemplate restTemplate) {
-        ClientHttpRequestFactory requestFactory = restTemplate.getRequestFactory();
-        if (requestFactory instanceof InterceptingClientHttpRequestFactory) {
-            Field requestFactoryField = ReflectionUtils.findField(RestTemplate.class, "requestFactory");
-            ReflectionUtils.makeAccessible(requestFactoryField);
-            requestFactory = (ClientHttpRequestFactory) ReflectionUtils.getField(requestFactoryField, restTemplate);
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(WebClient.class)
+    @ConditionalOnProperty(name = "client.logging.enabled", matchIfMissing = true)
+    static class WebClientConfiguration {
+
+        @Bean
+        WebClientCustomizer loggingWebClientCustomizer(ClientLoggingInterceptorFactory interceptorFactory) {
+            return webClientBuilder -> webClientBuilder.filter(new LoggingExchangeFilterFunction(interceptorFactory.create()));
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnBean(MeterRegistry.class)
+    @ConditionalOnProperty(name = "client.logging.metrics.enabled", matchIfMissing = true)
+    static class MetricsConfiguration {
+
+        @Bean
+        ExchangeMetrics clientLoggingExchangeMetrics(MeterRegistry registry, RestClientLoggingProperties properties) {
+            return new ExchangeMetrics(registry, properties.getMetrics().getMaxHosts());
+        }
+
+        @Bean
+        MeterBinder clientLoggingAsyncDispatcherMetrics(ObjectProvider<AsyncLogDispatcher> asyncDispatcher) {
+            return registry -> asyncDispatcher.ifAvailable(dispatcher -> {
+                FunctionCounter.builder("client.logging.async.dropped", dispatcher, AsyncLogDispatcher::getDroppedEvents)
+                    .description("Log events dropped because the async buffer was full")
+                    .register(registry);
+                Gauge.builder("client.logging.async.queued", dispatcher, AsyncLogDispatcher::getQueuedEvents)
+                    .description("Log events waiting to be written")
+                    .register(registry);
+            });
         }
-        return requestFactory;
     }
 
 }
@@ -1,9 +1,13 @@
 package inthemix.clientlogging;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @ConfigurationProperties("client.logging")
 public class RestClientLoggingProperties {
@@ -13,6 +17,17 @@ public class RestClientLoggingProperties {
     /** Whether to configure rest client request/response logging */
     private boolean enabled = true;
 
+    /** Maximum part of a response body to include in the log, the rest is streamed to the caller uncaptured */
+    private DataSize maxBodyBytes = DataSize.ofBytes(LoggingClientHttpRequestInterceptor.DEFAULT_MAX_BODY_BYTES);
+
+    private final Async async = new Async();
+
+    private final Sampling sampling = new Sampling();
+
+    private final Metrics metrics = new Metrics();
+
+    private final Redaction redaction = new Redaction();
+
     public Set<String> getExcludeHeaders() {
         return excludeHeaders;
     }
@@ -28,4 +43,188 @@ public class RestClientLoggingProperties {
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
     }
+
+    public DataSize getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public void setMaxBodyBytes(DataSize maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public Async getAsync() {
+        return async;
+    }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public Redaction getRedaction() {
+        return redaction;
+    }
+
+    public static class Async {
+        /** Whether to render and write log messages on a background thread instead of the calling thread */
+        private boolean enabled = false;
+
+        /** Number of log events that can be queued, rounded up to a power of two */
+        private int bufferSize = 1024;
+
+        /** What to do with new log events when the buffer is full */
+        private AsyncLogDispatcher.OverflowPolicy overflowPolicy = AsyncLogDispatcher.OverflowPolicy.DROP;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public AsyncLogDispatcher.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(AsyncLogDispatcher.OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+    }
+
+    public static class Sampling {
+        /** Fraction of exchanges to log at debug level, between 0 and 1 */
+        private double rate = 1.0;
+
+        /** Maximum number of exchanges to log at debug level per second per target host, 0 means unlimited */
+        private double perHostLimit = 0;
+
+        /** Number of exchanges per target host that may be logged in a burst above the per-second limit */
+        private int burst = 10;
+
+        /** Maximum number of target hosts to track a separate limit for, others share a single limit */
+        private int maxHosts = 1000;
+
+        /** Whether responses with an error status are logged at debug level regardless of sampling */
+        private boolean alwaysLogErrors = true;
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public double getPerHostLimit() {
+            return perHostLimit;
+        }
+
+        public void setPerHostLimit(double perHostLimit) {
+            this.perHostLimit = perHostLimit;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+
+        public int getMaxHosts() {
+            return maxHosts;
+        }
+
+        public void setMaxHosts(int maxHosts) {
+            this.maxHosts = maxHosts;
+        }
+
+        public boolean isAlwaysLogErrors() {
+            return alwaysLogErrors;
+        }
+
+        public void setAlwaysLogErrors(boolean alwaysLogErrors) {
+            this.alwaysLogErrors = alwaysLogErrors;
+        }
+
+        boolean isActive() {
+            return rate < 1.0 || perHostLimit > 0;
+        }
+    }
+
+    public static class Metrics {
+        /** Whether to record the durations of outgoing exchanges when a MeterRegistry is available */
+        private boolean enabled = true;
+
+        /** Maximum number of distinct target hosts to use as host tag, others are tagged as 'other' */
+        private int maxHosts = 100;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxHosts() {
+            return maxHosts;
+        }
+
+        public void setMaxHosts(int maxHosts) {
+            this.maxHosts = maxHosts;
+        }
+    }
+
+    public static class Redaction {
+        /** Whether to mask the values of sensitive fields in logged JSON bodies */
+        private boolean enabled = false;
+
+        /** Patterns that have to match a JSON field name as a whole for its value to be masked */
+        private List<Pattern> fieldPatternsToMask = Stream.of(
+            "(?i).*password.*",
+            "(?i).*secret.*",
+            "(?i).*token.*",
+            "(?i).*api[-_]?key.*"
+        ).map(Pattern::compile).toList();
+
+        /** Bodies larger than this are left out of the log instead of being redacted */
+        private DataSize maxBodySize = DataSize.ofMegabytes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<Pattern> getFieldPatternsToMask() {
+            return fieldPatternsToMask;
+        }
+
+        public void setFieldPatternsToMask(List<Pattern> fieldPatternsToMask) {
+            this.fieldPatternsToMask = fieldPatternsToMask;
+        }
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public void setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package inthemix.clientcache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingClientHttpRequestInterceptorTest {
+
+    private static final URI URI_A = URI.create("http://example.com/a");
+    private static final URI URI_B = URI.create("http://example.com/b");
+
+    private final ResponseCache cache = new ResponseCache(10_000);
+    private final CachingClientHttpRequestInterceptor interceptor = new CachingClientHttpRequestInterceptor(cache);
+
+    /** The responses the server will send, in order */
+    private final Deque<MockClientHttpResponse> responses = new ArrayDeque<>();
+    /** The headers of the requests that reached the server */
+    private final List<HttpHeaders> sent = new ArrayList<>();
+
+    @Test
+    void servesFreshResponsesFromTheCache() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        assertThat(body(get(URI_A))).isEqualTo("a");
+        assertThat(body(get(URI_A))).isEqualTo("a");
+
+        assertThat(sent).hasSize(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void revalidatesStaleResponsesAndRefreshesTheirHeaders() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.ETAG, "\"1\"", HttpHeaders.CACHE_CONTROL, "no-cache");
+        respond(HttpStatus.NOT_MODIFIED, "", HttpHeaders.ETAG, "\"1\"", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        get(URI_A).close();
+
+        ClientHttpResponse revalidated = get(URI_A);
+
+        assertThat(sent.get(1).getIfNoneMatch()).containsExactly("\"1\"");
+        assertThat(revalidated.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(revalidated.getHeaders().getCacheControl()).isEqualTo("max-age=60");
+        assertThat(body(revalidated)).isEqualTo("a");
+        assertThat(cache.getRevalidations()).isEqualTo(1);
+        // fresh now, thanks to the headers of the 304
+        assertThat(body(get(URI_A))).isEqualTo("a");
+        assertThat(sent).hasSize(2);
+        assertThat(cache.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void doesntStoreNoStoreResponses() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.CACHE_CONTROL, "no-store, max-age=60");
+        respond(HttpStatus.OK, "b", HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        assertThat(body(get(URI_A))).isEqualTo("a");
+        assertThat(body(get(URI_A))).isEqualTo("b");
+
+        assertThat(sent).hasSize(2);
+    }
+
+    @Test
+    void revalidatesNoCacheResponsesEveryTime() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.ETAG, "\"1\"", HttpHeaders.CACHE_CONTROL, "no-cache");
+        respond(HttpStatus.NOT_MODIFIED, "", HttpHeaders.ETAG, "\"1\"");
+        respond(HttpStatus.NOT_MODIFIED, "", HttpHeaders.ETAG, "\"1\"");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(body(get(URI_A))).isEqualTo("a");
+        }
+
+        assertThat(sent).hasSize(3);
+        assertThat(cache.getRevalidations()).isEqualTo(2);
+    }
+
+    @Test
+    void bypassesTheCacheForNoStoreRequests() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, "b", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        get(URI_A).close();
+
+        assertThat(body(get(URI_A, HttpHeaders.CACHE_CONTROL, "no-store"))).isEqualTo("b");
+
+        assertThat(sent).hasSize(2);
+    }
+
+    @Test
+    void bypassesTheCacheForRequestsWithCredentials() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, "b", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, "c", HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        assertThat(body(get(URI_A, HttpHeaders.COOKIE, "session=1"))).isEqualTo("a");
+        assertThat(body(get(URI_A, HttpHeaders.AUTHORIZATION, "Bearer 1"))).isEqualTo("b");
+        assertThat(body(get(URI_A))).isEqualTo("c");
+
+        assertThat(sent).hasSize(3);
+        assertThat(cache.getSize()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyServesResponsesThatVaryByAcceptEncodingForTheSameEncodings() throws IOException {
+        respond(HttpStatus.OK, "gzipped", HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING,
+                HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, "plain", HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING,
+                HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        assertThat(body(get(URI_A, HttpHeaders.ACCEPT_ENCODING, "gzip"))).isEqualTo("gzipped");
+        assertThat(body(get(URI_A, HttpHeaders.ACCEPT_ENCODING, "gzip"))).isEqualTo("gzipped");
+        assertThat(body(get(URI_A))).isEqualTo("plain");
+        assertThat(body(get(URI_A))).isEqualTo("plain");
+
+        assertThat(sent).hasSize(2);
+    }
+
+    @Test
+    void doesntStoreResponsesThatVaryByOtherHeaders() throws IOException {
+        respond(HttpStatus.OK, "en", HttpHeaders.VARY, HttpHeaders.ACCEPT_LANGUAGE,
+                HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        get(URI_A, HttpHeaders.ACCEPT_LANGUAGE, "en").close();
+
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    void unsafeRequestsInvalidateTheCachedResponse() throws IOException {
+        respond(HttpStatus.OK, "a", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.NO_CONTENT, "");
+        respond(HttpStatus.OK, "b", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        get(URI_A).close();
+
+        execute(HttpMethod.POST, URI_A).close();
+
+        assertThat(body(get(URI_A))).isEqualTo("b");
+        assertThat(sent).hasSize(3);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedResponsesWhenFull() throws IOException {
+        ResponseCache cache = new ResponseCache(1000);
+        CachingClientHttpRequestInterceptor interceptor = new CachingClientHttpRequestInterceptor(cache);
+        String body = "x".repeat(400);
+        respond(HttpStatus.OK, body, HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, body, HttpHeaders.CACHE_CONTROL, "max-age=60");
+        respond(HttpStatus.OK, body, HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        execute(interceptor, HttpMethod.GET, URI_A).close();
+        execute(interceptor, HttpMethod.GET, URI_B).close();
+        execute(interceptor, HttpMethod.GET, URI_A).close();
+
+        // only one fits: A was evicted to make room for B, so fetched again, evicting B
+        assertThat(sent).hasSize(3);
+        assertThat(cache.getEvictions()).isEqualTo(2);
+        assertThat(cache.getSize()).isEqualTo(1);
+        assertThat(cache.getWeight()).isLessThanOrEqualTo(1000);
+    }
+
+    @Test
+    void registersMetersForHitsMissesAndRevalidations() throws IOException {
+        var registry = new SimpleMeterRegistry();
+        new ClientCacheAutoConfiguration.MetricsConfiguration().clientResponseCacheMetrics(cache).bindTo(registry);
+        respond(HttpStatus.OK, "a", HttpHeaders.ETAG, "\"1\"", HttpHeaders.CACHE_CONTROL, "max-age=0");
+        respond(HttpStatus.NOT_MODIFIED, "", HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+        for (int i = 0; i < 3; i++) {
+            get(URI_A).close();
+        }
+
+        assertThat(registry.get("client.cache.requests").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("client.cache.requests").tag("result", "revalidated").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(registry.get("client.cache.requests").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("client.cache.entries").gauge().value()).isEqualTo(1);
+    }
+
+    private void respond(HttpStatus status, String body, String... headers) {
+        var response = new MockClientHttpResponse(body.getBytes(StandardCharsets.UTF_8), status);
+        for (int i = 0; i < headers.length; i += 2) {
+            response.getHeaders().add(headers[i], headers[i + 1]);
+        }
+        responses.add(response);
+    }
+
+    private ClientHttpResponse get(URI uri, String... headers) throws IOException {
+        return execute(interceptor, HttpMethod.GET, uri, headers);
+    }
+
+    private ClientHttpResponse execute(HttpMethod method, URI uri) throws IOException {
+        return execute(interceptor, method, uri);
+    }
+
+    private ClientHttpResponse execute(CachingClientHttpRequestInterceptor interceptor, HttpMethod method, URI uri,
+                                       String... headers) throws IOException {
+        var request = new MockClientHttpRequest(method, uri);
+        for (int i = 0; i < headers.length; i += 2) {
+            request.getHeaders().add(headers[i], headers[i + 1]);
+        }
+        return interceptor.intercept(request, new byte[0], (req, body) -> {
+            HttpHeaders copy = new HttpHeaders();
+            copy.addAll(req.getHeaders());
+            sent.add(copy);
+            return responses.remove();
+        });
+    }
+
+    private static String body(ClientHttpResponse response) throws IOException {
+        try (response) {
+            return new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
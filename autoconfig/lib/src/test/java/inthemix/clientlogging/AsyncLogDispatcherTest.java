@@ -0,0 +1,130 @@
+package inthemix.clientlogging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncLogDispatcherTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(AsyncLogDispatcherTest.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private AsyncLogDispatcher dispatcher;
+
+    /** Lets the test fill the buffer while the worker is busy writing */
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    AsyncLogDispatcherTest() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        dispatcher.close();
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void writesAllEventsInOrderWhenClosed() {
+        dispatcher = new AsyncLogDispatcher(1024, AsyncLogDispatcher.OverflowPolicy.DROP);
+        for (int i = 0; i < 500; i++) {
+            String message = "event " + i;
+            assertThat(dispatcher.dispatch(logger, Level.INFO, () -> message)).isTrue();
+        }
+
+        dispatcher.close();
+
+        assertThat(appender.list).hasSize(500);
+        assertThat(appender.list.get(0).getFormattedMessage()).isEqualTo("event 0");
+        assertThat(appender.list.get(499).getFormattedMessage()).isEqualTo("event 499");
+    }
+
+    @Test
+    void dropsEventsDispatchedAfterClosing() {
+        dispatcher = new AsyncLogDispatcher(16, AsyncLogDispatcher.OverflowPolicy.BLOCK);
+        dispatcher.close();
+
+        assertThat(dispatcher.dispatch(logger, Level.INFO, () -> "too late")).isFalse();
+
+        assertThat(dispatcher.getDroppedEvents()).isEqualTo(1);
+        assertThat(dispatcher.getQueuedEvents()).isZero();
+    }
+
+    @Test
+    void writesTheEventsWithTheCallersMdc() {
+        dispatcher = new AsyncLogDispatcher(16, AsyncLogDispatcher.OverflowPolicy.DROP);
+        MDC.put("traceId", "abc");
+        try {
+            dispatcher.dispatch(logger, Level.WARN, builder -> builder.addKeyValue("status", 503).log("failed"));
+        } finally {
+            MDC.clear();
+        }
+
+        dispatcher.close();
+
+        ILoggingEvent event = appender.list.get(0);
+        assertThat(event.getLevel()).isEqualTo(ch.qos.logback.classic.Level.WARN);
+        assertThat(event.getMDCPropertyMap()).containsEntry("traceId", "abc");
+        assertThat(event.getKeyValuePairs()).singleElement().satisfies(pair -> assertThat(pair.value).isEqualTo(503));
+    }
+
+    @Test
+    void dropsEventsWhenTheBufferIsFull() throws InterruptedException {
+        dispatcher = new AsyncLogDispatcher(2, AsyncLogDispatcher.OverflowPolicy.DROP);
+        occupyWorker();
+
+        assertThat(dispatcher.dispatch(logger, Level.INFO, () -> "1")).isTrue();
+        assertThat(dispatcher.dispatch(logger, Level.INFO, () -> "2")).isTrue();
+        assertThat(dispatcher.dispatch(logger, Level.INFO, () -> "3")).isFalse();
+
+        assertThat(dispatcher.getDroppedEvents()).isEqualTo(1);
+        release.countDown();
+        dispatcher.close();
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage).containsExactly("busy", "1", "2");
+    }
+
+    @Test
+    void waitsForRoomWhenTheBufferIsFull() throws Exception {
+        dispatcher = new AsyncLogDispatcher(2, AsyncLogDispatcher.OverflowPolicy.BLOCK);
+        occupyWorker();
+        dispatcher.dispatch(logger, Level.INFO, () -> "1");
+        dispatcher.dispatch(logger, Level.INFO, () -> "2");
+
+        var third = CompletableFuture.supplyAsync(() -> dispatcher.dispatch(logger, Level.INFO, () -> "3"));
+
+        Thread.sleep(100);
+        assertThat(third).isNotDone();
+        release.countDown();
+        assertThat(third.get(5, TimeUnit.SECONDS)).isTrue();
+        dispatcher.close();
+        assertThat(dispatcher.getDroppedEvents()).isZero();
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+            .containsExactly("busy", "1", "2", "3");
+    }
+
+    private void occupyWorker() throws InterruptedException {
+        dispatcher.dispatch(logger, Level.INFO, builder -> {
+            writing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            builder.log("busy");
+        });
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
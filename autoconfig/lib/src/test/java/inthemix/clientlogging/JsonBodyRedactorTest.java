@@ -0,0 +1,88 @@
+package inthemix.clientlogging;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonBodyRedactorTest {
+
+    private final JsonBodyRedactor redactor = new JsonBodyRedactor(
+        List.of(Pattern.compile("(?i).*password"), Pattern.compile("token")), 1024);
+
+    @Test
+    void masksTheValuesOfMatchingFields() {
+        assertThat(redact("{\"user\":\"joe\",\"password\":\"secret\",\"age\":42}"))
+            .isEqualTo("{\"user\":\"joe\",\"password\":\"******\",\"age\":42}");
+    }
+
+    @Test
+    void masksNestedObjectsAndArraysAsAWhole() {
+        assertThat(redact("{\"token\":{\"value\":\"abc\",\"scopes\":[\"a\",\"b\"]},\"users\":"
+            + "[{\"name\":\"joe\",\"dbPassword\":[1,2]}]}"))
+            .isEqualTo("{\"token\":\"******\",\"users\":[{\"name\":\"joe\",\"dbPassword\":\"******\"}]}");
+    }
+
+    @Test
+    void matchesFieldNamesAsAWholeAndOnlyCaseInsensitivelyWhenThePatternDoes() {
+        assertThat(redact("{\"PASSWORD\":\"a\",\"Token\":\"b\",\"tokens\":\"c\"}"))
+            .isEqualTo("{\"PASSWORD\":\"******\",\"Token\":\"b\",\"tokens\":\"c\"}");
+    }
+
+    @Test
+    void rendersTruncatedBodiesUpToTheLastCompleteToken() {
+        // the value of a sensitive field is masked without reading it
+        assertThat(redact("{\"user\":\"joe\",\"password\":\"sec"))
+            .isEqualTo("{\"user\":\"joe\",\"password\":\"******\"");
+        assertThat(redact("{\"user\":\"jo")).isEqualTo("{\"user\"");
+        assertThat(redact("{\"user\":\"joe\",\"age\":4")).isEqualTo("{\"user\":\"joe\",\"age\"");
+        assertThat(redact("[1,2,")).isEqualTo("[1,2");
+    }
+
+    @Test
+    void stopsAtTheFirstSyntaxError() {
+        assertThat(redact("{\"user\":\"joe\",password=secret}"))
+            .isEqualTo("{\"user\":\"joe\"...(invalid JSON, rest of body not logged)");
+        assertThat(redact("password=secret")).isEqualTo("...(invalid JSON, rest of body not logged)");
+    }
+
+    @Test
+    void leavesTooLargeBodiesOut() {
+        var redactor = new JsonBodyRedactor(List.of(Pattern.compile("password")), 10);
+
+        var builder = new StringBuilder();
+        redactor.appendRedacted(builder, new byte[11], 11, StandardCharsets.UTF_8);
+
+        assertThat(builder).hasToString("(11 bytes, too large to redact)");
+    }
+
+    @Test
+    void decodesOtherCharsets() {
+        assertThat(redact("{\"naïve\":\"café\",\"password\":\"é\"}", StandardCharsets.ISO_8859_1))
+            .isEqualTo("{\"naïve\":\"café\",\"password\":\"******\"}");
+    }
+
+    @Test
+    void memoizesAtMost1000FieldNames() {
+        for (int i = 0; i < 1500; i++) {
+            assertThat(redactor.isSensitive("field" + i + (i % 2 == 0 ? "Password" : ""))).isEqualTo(i % 2 == 0);
+            assertThat(redactor.getMemoizedFieldNames()).isLessThanOrEqualTo(1000);
+        }
+        assertThat(redactor.isSensitive("field0Password")).isTrue();
+    }
+
+    private String redact(String json) {
+        return redact(json, StandardCharsets.UTF_8);
+    }
+
+    private String redact(String json, Charset charset) {
+        byte[] bytes = json.getBytes(charset);
+        var builder = new StringBuilder();
+        redactor.appendRedacted(builder, bytes, bytes.length, charset);
+        return builder.toString();
+    }
+}
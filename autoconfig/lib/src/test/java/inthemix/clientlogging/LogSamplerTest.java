@@ -0,0 +1,88 @@
+package inthemix.clientlogging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSamplerTest {
+
+    private final AtomicLong nanoTime = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    /** 10 per second per host, so one every 100ms, after a burst of 3; 2 hosts tracked separately */
+    private final LogSampler sampler = new LogSampler(1.0, 10, 3, 2, nanoTime::get);
+
+    @Test
+    void allowsABurstPerHostThenTheSustainedRate() {
+        assertThat(samples("a", 5)).isEqualTo(3);
+
+        advanceMillis(100);
+        assertThat(samples("a", 5)).isEqualTo(1);
+
+        for (int i = 0; i < 10; i++) {
+            advanceMillis(100);
+            assertThat(sample("a")).isTrue();
+        }
+        assertThat(sample("a")).isFalse();
+    }
+
+    @Test
+    void refillsTheBurstWhenIdle() {
+        samples("a", 3);
+
+        advanceMillis(300);
+
+        assertThat(samples("a", 5)).isEqualTo(3);
+    }
+
+    @Test
+    void keepsABudgetPerHost() {
+        assertThat(samples("a", 5)).isEqualTo(3);
+        assertThat(samples("b", 5)).isEqualTo(3);
+    }
+
+    @Test
+    void sharesOneBudgetAmongHostsBeyondTheMaximum() {
+        samples("a", 1);
+        samples("b", 1);
+
+        assertThat(samples("c", 2)).isEqualTo(2);
+        assertThat(samples("d", 2)).isEqualTo(1);
+        // tracked hosts keep their own budget
+        assertThat(samples("a", 5)).isEqualTo(2);
+    }
+
+    @Test
+    void samplesAtTheGivenRate() {
+        var sampler = new LogSampler(0.0, 0, 0, 2, nanoTime::get);
+
+        assertThat(sampler.sample(request("a"))).isFalse();
+        assertThat(new LogSampler(1.0, 0, 0, 2, nanoTime::get).sample(request("a"))).isTrue();
+    }
+
+    private int samples(String host, int count) {
+        int sampled = 0;
+        for (int i = 0; i < count; i++) {
+            if (sample(host)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    private boolean sample(String host) {
+        return sampler.sample(request(host));
+    }
+
+    private static MockClientHttpRequest request(String host) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create("http://" + host + "/path"));
+    }
+
+    private void advanceMillis(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
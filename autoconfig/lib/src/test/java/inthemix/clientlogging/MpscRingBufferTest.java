@@ -0,0 +1,87 @@
+package inthemix.clientlogging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscRingBufferTest {
+
+    @Test
+    void roundsTheCapacityUpToAPowerOfTwo() {
+        assertThat(new MpscRingBuffer<>(5).capacity()).isEqualTo(8);
+        assertThat(new MpscRingBuffer<>(8).capacity()).isEqualTo(8);
+        assertThat(new MpscRingBuffer<>(0).capacity()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsElementsWhenFull() {
+        var buffer = new MpscRingBuffer<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+
+        assertThat(buffer.offer(4)).isFalse();
+        assertThat(buffer.size()).isEqualTo(4);
+    }
+
+    @Test
+    void wrapsAround() {
+        var buffer = new MpscRingBuffer<Integer>(4);
+        List<Integer> polled = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+            if (i % 2 == 1) {
+                polled.add(buffer.poll());
+                polled.add(buffer.poll());
+            }
+        }
+        for (Integer element = buffer.poll(); element != null; element = buffer.poll()) {
+            polled.add(element);
+        }
+
+        assertThat(polled).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void keepsTheOrderOfEachProducer() throws InterruptedException {
+        var buffer = new MpscRingBuffer<long[]>(64);
+        int producers = 4;
+        int perProducer = 5_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    long[] element = { producer, i };
+                    while (!buffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long[] next = new long[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertThat(element[1]).isEqualTo(next[(int) element[0]]++);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(next).containsOnly(perProducer);
+        assertThat(buffer.poll()).isNull();
+    }
+}
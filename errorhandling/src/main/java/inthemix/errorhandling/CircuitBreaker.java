@@ -0,0 +1,139 @@
+package inthemix.errorhandling;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calling a downstream service that mostly times out, so that requests fail right away instead of each one
+ * holding a thread until the timeout.
+ * <p>
+ * The breaker opens once at least {@code timeoutRateThreshold} of the calls in the last {@code window} timed out, if
+ * there were at least {@code minimumCalls} of them. After {@code openDuration}, a single trial call is let through:
+ * if it gets a response the breaker closes, if it times out the breaker opens again.
+ * <p>
+ * Calls with an outcome that says nothing about the service, like a timeout shorter than usual, are reported with
+ * {@link #onIgnored()}: they aren't counted, and a trial call reported that way lets the next call be the trial.
+ * <p>
+ * There are no locks: the state is swapped with compare-and-set, and outcomes are counted in {@link LongAdder}s per
+ * second of the window, which are replaced by fresh ones instead of being reset once they've rolled out of it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private record Status(State state, long sinceNanos) { }
+
+    private static final class Bucket {
+
+        final long second;
+        final LongAdder calls = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double timeoutRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, System.nanoTime()));
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    public CircuitBreaker(double timeoutRateThreshold, int minimumCalls, Duration window, Duration openDuration) {
+        this.timeoutRateThreshold = timeoutRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openDurationNanos = openDuration.toNanos();
+        this.buckets = new AtomicReferenceArray<>((int) Math.max(1, window.toSeconds()));
+    }
+
+    public State state() {
+        return status.get().state();
+    }
+
+    /**
+     * @return {@code false} if the call should not be made; otherwise the outcome has to be reported with
+     *         {@link #onResponse()}, {@link #onTimeout()} or {@link #onIgnored()}
+     */
+    public boolean tryAcquire() {
+        Status current = status.get();
+        return switch (current.state()) {
+            case CLOSED -> true;
+            // the trial call is under way
+            case HALF_OPEN -> false;
+            // only the thread that makes the switch gets to make the trial call
+            case OPEN -> System.nanoTime() - current.sinceNanos() >= openDurationNanos
+                    && status.compareAndSet(current, new Status(State.HALF_OPEN, System.nanoTime()));
+        };
+    }
+
+    public void onResponse() {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            if (status.compareAndSet(current, new Status(State.CLOSED, System.nanoTime()))) {
+                // start over, rather than opening again on the timeouts that opened the breaker
+                for (int i = 0; i < buckets.length(); i++) {
+                    buckets.set(i, null);
+                }
+            }
+            return;
+        }
+        currentBucket().calls.increment();
+    }
+
+    public void onTimeout() {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            status.compareAndSet(current, new Status(State.OPEN, System.nanoTime()));
+            return;
+        }
+        Bucket bucket = currentBucket();
+        bucket.calls.increment();
+        bucket.timeouts.increment();
+        if (current.state() == State.CLOSED && exceedsThreshold()) {
+            status.compareAndSet(current, new Status(State.OPEN, System.nanoTime()));
+        }
+    }
+
+    public void onIgnored() {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            // open, but for long enough already to allow another trial call right away
+            status.compareAndSet(current, new Status(State.OPEN, System.nanoTime() - openDurationNanos));
+        }
+    }
+
+    private boolean exceedsThreshold() {
+        long second = Math.floorDiv(System.nanoTime(), SECOND_NANOS);
+        long calls = 0;
+        long timeouts = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.second > second - buckets.length()) {
+                calls += bucket.calls.sum();
+                timeouts += bucket.timeouts.sum();
+            }
+        }
+        return calls >= minimumCalls && timeouts >= timeoutRateThreshold * calls;
+    }
+
+    private Bucket currentBucket() {
+        long second = Math.floorDiv(System.nanoTime(), SECOND_NANOS);
+        int index = Math.floorMod(second, buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.second >= second) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(second);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package inthemix.errorhandling;
+
+/**
+ * Thrown instead of calling a downstream service that has been timing out, see {@link CircuitBreaker}.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String downstream) {
+        super("Not calling " + downstream + ", it has been timing out");
+    }
+}
@@ -0,0 +1,39 @@
+package inthemix.errorhandling;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+
+import static org.springframework.web.context.request.RequestAttributes.SCOPE_REQUEST;
+
+/**
+ * The moment by which the client of the current request no longer waits for its response, so there's no point in
+ * making downstream calls for it that end later. Clients pass the time they're willing to wait in the
+ * {@value #HEADER} header, in milliseconds, and we pass what's left of it to downstream services in the same way.
+ *
+ * @see DeadlineFilter
+ */
+public record Deadline(long expiresAtNanos) {
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    static final String ATTRIBUTE = Deadline.class.getName();
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public long remainingNanos() {
+        return expiresAtNanos - System.nanoTime();
+    }
+
+    /**
+     * @return the given timeout, or the time left until the deadline of the current request if that's less
+     */
+    public static long remainingNanos(long timeoutNanos) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Deadline deadline = attributes != null ? (Deadline) attributes.getAttribute(ATTRIBUTE, SCOPE_REQUEST) : null;
+        return deadline != null ? Math.min(timeoutNanos, deadline.remainingNanos()) : timeoutNanos;
+    }
+}
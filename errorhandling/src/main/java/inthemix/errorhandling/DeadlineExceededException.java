@@ -0,0 +1,18 @@
+package inthemix.errorhandling;
+
+/**
+ * Thrown when a downstream call doesn't complete before the request's deadline or the call's timeout, or when there's
+ * no time left to make it at all.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
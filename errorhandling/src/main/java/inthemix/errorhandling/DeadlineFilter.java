@@ -0,0 +1,33 @@
+package inthemix.errorhandling;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Sets the {@link Deadline} of requests that have a {@value Deadline#HEADER} header. Since the deadline starts when
+ * the request is received, the time spent before that in the network or a load balancer isn't accounted for.
+ */
+@Component
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String timeout = request.getHeader(Deadline.HEADER);
+        if (timeout != null) {
+            try {
+                request.setAttribute(Deadline.ATTRIBUTE, Deadline.after(Duration.ofMillis(Long.parseLong(timeout))));
+            } catch (NumberFormatException e) {
+                // not something we understand, so no deadline
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -19,7 +19,8 @@ public class ErrorHandlingAdvice {
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
-    @ExceptionHandler({ TimeoutException.class, HttpTimeoutException.class })
+    @ExceptionHandler({ TimeoutException.class, HttpTimeoutException.class, DeadlineExceededException.class,
+            CircuitBreakerOpenException.class })
     @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
     void handle(ServletWebRequest request) {
         var cause = request.getAttribute("org.springframework.boot.web.servlet.error.DefaultErrorAttributes.ERROR", SCOPE_REQUEST);
@@ -0,0 +1,29 @@
+package inthemix.errorhandling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(HttpBinProperties.class)
+public class HttpBinConfiguration {
+
+    @Bean
+    CircuitBreaker httpBinCircuitBreaker(HttpBinProperties properties) {
+        HttpBinProperties.CircuitBreakerProperties circuitBreaker = properties.circuitBreaker();
+        return new CircuitBreaker(circuitBreaker.timeoutRateThreshold(), circuitBreaker.minimumCalls(),
+                circuitBreaker.window(), circuitBreaker.openDuration());
+    }
+
+    /**
+     * Closed by Spring on shutdown, as it's {@link AutoCloseable}.
+     */
+    @Bean
+    ResilientCaller httpBinCaller(CircuitBreaker httpBinCircuitBreaker, HttpBinProperties properties,
+                                  MeterRegistry meterRegistry) {
+        HttpBinProperties.HedgingProperties hedging = properties.hedging();
+        return new ResilientCaller("httpbin", SimpleService.TIMEOUT, httpBinCircuitBreaker, hedging.enabled(),
+                hedging.minDelay(), meterRegistry);
+    }
+}
@@ -0,0 +1,32 @@
+package inthemix.errorhandling;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * Where httpbin is, and how calls to it are protected, see {@link CircuitBreaker} and {@link ResilientCaller}.
+ */
+@ConfigurationProperties("httpbin")
+public record HttpBinProperties(@DefaultValue("http://httpbin") URI url,
+                                @DefaultValue CircuitBreakerProperties circuitBreaker,
+                                @DefaultValue HedgingProperties hedging) {
+
+    /**
+     * @param timeoutRateThreshold the share of calls that timed out within the window at which the breaker opens
+     * @param minimumCalls the calls within the window below which the breaker doesn't open
+     * @param openDuration how long the breaker stays open before letting a trial call through
+     */
+    public record CircuitBreakerProperties(@DefaultValue("0.5") double timeoutRateThreshold,
+                                           @DefaultValue("5") int minimumCalls,
+                                           @DefaultValue("10s") Duration window,
+                                           @DefaultValue("5s") Duration openDuration) { }
+
+    /**
+     * @param minDelay the least time to wait before hedging, to not double calls that are fast anyway
+     */
+    public record HedgingProperties(@DefaultValue("false") boolean enabled,
+                                    @DefaultValue("50ms") Duration minDelay) { }
+}
@@ -0,0 +1,328 @@
+package inthemix.errorhandling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Makes calls to a downstream service with a {@link CircuitBreaker}, within the {@link Deadline} of the current
+ * request, and optionally hedged.
+ * <p>
+ * A call gets the configured timeout, or what's left of the request's deadline if that's less, and is given the
+ * time it has left so it can pass it on. When there's no time left, or the breaker is open, the call isn't made and a
+ * {@link DeadlineExceededException} or {@link CircuitBreakerOpenException} is thrown right away. Only timeouts of the
+ * configured timeout count for the breaker: when the request's deadline was shorter, the downstream service wasn't
+ * given the time it's entitled to, and a client sending short deadlines shouldn't open the breaker for all others.
+ * <p>
+ * With hedging enabled, a call that hasn't completed after the 95th percentile of recent latencies is made a second
+ * time, and whichever response comes first is used. This cuts the tail latency caused by the odd slow response, at
+ * the cost of at most one extra call for about 5% of the calls. When the second call wins, the first is allowed to
+ * complete, to measure the latency saved. The percentile is recomputed every {@value #LATENCY_RECOMPUTE_INTERVAL}
+ * calls, rather than sorting the recent latencies for each one.
+ * <p>
+ * Calls that won't be hedged, because hedging is disabled or there are too few latencies yet, are made on the
+ * caller's thread. Those rely on the call to honour the time it's given, like with a read timeout: one that returns
+ * after it is counted as a timeout still, but it isn't interrupted. Calls that fail with a timeout of their own throw a
+ * {@link DeadlineExceededException} too, with that timeout as its cause.
+ * <p>
+ * Closing waits for the calls being made on other threads to complete; it's called by Spring when this is a bean.
+ */
+public class ResilientCaller implements AutoCloseable {
+
+    private record Win<T>(T value, boolean hedge, long nanos) { }
+
+    /** Recent latencies to base the hedging delay on */
+    private static final int LATENCY_SAMPLES = 128;
+    /** Below this, the 95th percentile doesn't mean much yet */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final int LATENCY_RECOMPUTE_INTERVAL = 16;
+
+    private final String name;
+    private final long timeoutNanos;
+    private final CircuitBreaker circuitBreaker;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong latencyCount = new AtomicLong();
+    /** The 95th percentile of the recent latencies, or 0 while there are too few of them */
+    private volatile long latencyP95;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Timer latencySaved;
+
+    /**
+     * @param name identifies the downstream service in messages and metrics
+     * @param minHedgeDelay the least time to wait before hedging, to not double calls that are fast anyway
+     */
+    public ResilientCaller(String name, Duration timeout, CircuitBreaker circuitBreaker, boolean hedging,
+                           Duration minHedgeDelay, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeoutNanos = timeout.toNanos();
+        this.circuitBreaker = circuitBreaker;
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+
+        Gauge.builder("downstream.circuitbreaker.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("State of the circuit breaker: 0 is closed, 1 open and 2 half-open")
+                .tag("client", name)
+                .register(meterRegistry);
+        this.successes = callCounter("success", meterRegistry);
+        this.failures = callCounter("failure", meterRegistry);
+        this.timeouts = callCounter("timeout", meterRegistry);
+        this.rejections = callCounter("rejected", meterRegistry);
+        this.hedges = hedgeCounter("sent", meterRegistry);
+        this.hedgeWins = hedgeCounter("won", meterRegistry);
+        this.latencySaved = Timer.builder("downstream.hedges.latency.saved")
+                .description("How much later the first call completed than the hedged call that won")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    private Counter callCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("downstream.calls")
+                .description("Calls to the downstream service, rejected ones weren't made as there was no time left "
+                        + "or the circuit breaker was open")
+                .tags("client", name, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter hedgeCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("downstream.hedges")
+                .description("Hedged calls made to the downstream service, and how many of them won")
+                .tags("client", name, "result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param call makes the call, given the time it has left
+     */
+    public <T> T call(Function<Duration, T> call) {
+        long timeout = Deadline.remainingNanos(timeoutNanos);
+        if (timeout <= 0) {
+            rejections.increment();
+            throw new DeadlineExceededException("No time left to call " + name);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            rejections.increment();
+            throw new CircuitBreakerOpenException(name);
+        }
+        long start = System.nanoTime();
+        boolean deadlineBound = timeout < timeoutNanos;
+        long hedgeDelay = hedgeDelayNanos();
+        if (hedgeDelay == 0 || hedgeDelay >= timeout) {
+            return callDirectly(call, start, timeout, deadlineBound);
+        }
+        return callHedged(call, start, timeout, deadlineBound, hedgeDelay);
+    }
+
+    private <T> T callDirectly(Function<Duration, T> call, long start, long timeout, boolean deadlineBound) {
+        T value;
+        try {
+            value = call.apply(Duration.ofNanos(timeout));
+        } catch (RuntimeException | Error e) {
+            if (isTimeout(e)) {
+                onTimeout(deadlineBound);
+                throw timeoutException(timeout, e);
+            }
+            onFailure();
+            throw e;
+        }
+        long end = System.nanoTime();
+        if (end - start > timeout) {
+            onTimeout(deadlineBound);
+            throw timeoutException(timeout, null);
+        }
+        onSuccess(end - start);
+        return value;
+    }
+
+    private <T> T callHedged(Function<Duration, T> call, long start, long timeout, boolean deadlineBound,
+                             long hedgeDelay) {
+        long deadline = start + timeout;
+        CompletableFuture<Win<T>> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger();
+        Future<?> first = start(call, false, deadline, winner, running);
+        Future<?> hedge = null;
+        try {
+            Win<T> win;
+            try {
+                win = winner.get(hedgeDelay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                hedges.increment();
+                hedge = start(call, true, deadline, winner, running);
+                win = winner.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            onSuccess(win.nanos() - start);
+            if (win.hedge()) {
+                hedgeWins.increment();
+            } else if (hedge != null) {
+                hedge.cancel(true);
+            }
+            return win.value();
+        } catch (TimeoutException e) {
+            cancel(first, hedge);
+            onTimeout(deadlineBound);
+            throw timeoutException(timeout, null);
+        } catch (ExecutionException e) {
+            cancel(first, hedge);
+            Throwable cause = e.getCause();
+            if (isTimeout(cause)) {
+                onTimeout(deadlineBound);
+                throw timeoutException(timeout, cause);
+            }
+            onFailure();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Call to " + name + " failed", cause);
+        } catch (InterruptedException e) {
+            cancel(first, hedge);
+            Thread.currentThread().interrupt();
+            // rare, and a trial call has to report back: count it as the timeout it would have been for our client
+            circuitBreaker.onTimeout();
+            throw new DeadlineExceededException("Interrupted while calling " + name);
+        }
+    }
+
+    private void onSuccess(long nanos) {
+        recordLatency(nanos);
+        circuitBreaker.onResponse();
+        successes.increment();
+    }
+
+    /**
+     * @param deadlineBound whether the request's deadline rather than the configured timeout ran out, which says
+     *                      nothing about the downstream service
+     */
+    private void onTimeout(boolean deadlineBound) {
+        if (deadlineBound) {
+            circuitBreaker.onIgnored();
+        } else {
+            circuitBreaker.onTimeout();
+        }
+        timeouts.increment();
+    }
+
+    private void onFailure() {
+        circuitBreaker.onResponse();
+        failures.increment();
+    }
+
+    /**
+     * @param cause the timeout the call failed with, if it didn't return late instead
+     */
+    private DeadlineExceededException timeoutException(long timeout, Throwable cause) {
+        return new DeadlineExceededException(
+                "Call to " + name + " didn't complete within " + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms", cause);
+    }
+
+    /**
+     * Makes the call on a virtual thread, completing the winner with its value unless another attempt was first.
+     * The winner only fails when all attempts that have been started failed.
+     */
+    private <T> Future<?> start(Function<Duration, T> call, boolean hedge, long deadline,
+                                CompletableFuture<Win<T>> winner, AtomicInteger running) {
+        running.incrementAndGet();
+        return executor.submit(() -> {
+            try {
+                T value = call.apply(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+                if (!winner.complete(new Win<>(value, hedge, System.nanoTime()))) {
+                    recordLatencySaved(hedge, winner);
+                }
+            } catch (Throwable e) {
+                // errors too, as the caller would otherwise wait for the winner until the deadline
+                if (running.decrementAndGet() == 0) {
+                    winner.completeExceptionally(e);
+                } else {
+                    recordLatencySaved(hedge, winner);
+                }
+            }
+        });
+    }
+
+    private <T> void recordLatencySaved(boolean hedge, CompletableFuture<Win<T>> winner) {
+        Win<T> win = winner.getNow(null);
+        if (!hedge && win != null && win.hedge()) {
+            latencySaved.record(System.nanoTime() - win.nanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void cancel(Future<?> first, Future<?> hedge) {
+        first.cancel(true);
+        if (hedge != null) {
+            hedge.cancel(true);
+        }
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException
+                    || cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordLatency(long nanos) {
+        long count = latencyCount.getAndIncrement() + 1;
+        latencies.set((int) ((count - 1) % LATENCY_SAMPLES), nanos);
+        if (hedging && count >= MIN_LATENCY_SAMPLES
+                && (count == MIN_LATENCY_SAMPLES || count % LATENCY_RECOMPUTE_INTERVAL == 0)) {
+            latencyP95 = p95((int) Math.min(count, LATENCY_SAMPLES));
+        }
+    }
+
+    private long p95(int count) {
+        long[] samples = new long[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = latencies.get(i);
+        }
+        Arrays.sort(samples);
+        return samples[(int) Math.ceil(count * 0.95) - 1];
+    }
+
+    /**
+     * @return how long to wait before hedging, or 0 to not hedge
+     */
+    private long hedgeDelayNanos() {
+        long p95 = latencyP95;
+        if (!hedging || p95 == 0) {
+            return 0;
+        }
+        return Math.max(p95, minHedgeDelayNanos);
+    }
+
+    /**
+     * Waits for the calls that are still being made on other threads, like the losers of hedged calls.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -1,22 +1,54 @@
 package inthemix.errorhandling;
 
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
 @Service
 public class SimpleService {
 
+    static final Duration TIMEOUT = Duration.ofSeconds(1);
+
     private RestClient restClient;
+    private ResilientCaller httpBin;
+
+    /**
+     * @param httpBin see {@link HttpBinConfiguration}
+     */
+    public SimpleService(RestClient.Builder builder, ResilientCaller httpBin, HttpBinProperties properties) {
+        this.restClient = builder.baseUrl(properties.url().toString())
+                .requestFactory(deadlineRequestFactory())
+                .build();
+        this.httpBin = httpBin;
+    }
 
-    public SimpleService(RestClient.Builder builder) {
-        var httpRequestFactory = new JdkClientHttpRequestFactory();
-        httpRequestFactory.setReadTimeout(1_000); // 1 second
-        this.restClient = builder.requestFactory(httpRequestFactory).build();
+    /**
+     * Times out reading the response after what's left of the request's deadline, or {@link #TIMEOUT} if that's
+     * less, so a call made on the request's thread doesn't keep it waiting when the client has given up already.
+     * Hedged calls, made on other threads, get the whole timeout, but {@link ResilientCaller} doesn't wait that long.
+     */
+    private static ClientHttpRequestFactory deadlineRequestFactory() {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+        return (uri, method) -> {
+            var requestFactory = new JdkClientHttpRequestFactory(httpClient, executor);
+            requestFactory.setReadTimeout(Duration.ofNanos(Math.max(1, Deadline.remainingNanos(TIMEOUT.toNanos()))));
+            return requestFactory.createRequest(uri, method);
+        };
     }
 
     public String timeout() {
-        return restClient.get().uri("http://httpbin/delay/2").retrieve().body(String.class);
+        // fails fast with a 504 when httpbin has been timing out, or the client won't wait for the response anyway
+        return httpBin.call(timeLeft -> restClient.get().uri("/delay/2")
+                .header(Deadline.HEADER, String.valueOf(timeLeft.toMillis()))
+                .retrieve()
+                .body(String.class));
     }
 
 }
@@ -0,0 +1,48 @@
+package inthemix.errorhandling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpBinConfigurationTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(HttpBinConfiguration.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new);
+
+    @Test
+    void bindsDefaults() {
+        contextRunner.run(context -> {
+            HttpBinProperties properties = context.getBean(HttpBinProperties.class);
+            assertThat(properties.url()).isEqualTo(URI.create("http://httpbin"));
+            assertThat(properties.circuitBreaker()).isEqualTo(new HttpBinProperties.CircuitBreakerProperties(
+                    0.5, 5, Duration.ofSeconds(10), Duration.ofSeconds(5)));
+            assertThat(properties.hedging())
+                    .isEqualTo(new HttpBinProperties.HedgingProperties(false, Duration.ofMillis(50)));
+            assertThat(context).hasSingleBean(CircuitBreaker.class).hasSingleBean(ResilientCaller.class);
+        });
+    }
+
+    @Test
+    void bindsProperties() {
+        contextRunner.withPropertyValues("httpbin.url=http://localhost:8080",
+                        "httpbin.circuit-breaker.timeout-rate-threshold=0.8",
+                        "httpbin.circuit-breaker.minimum-calls=10", "httpbin.circuit-breaker.window=30s",
+                        "httpbin.circuit-breaker.open-duration=1m", "httpbin.hedging.enabled=true",
+                        "httpbin.hedging.min-delay=20ms")
+                .run(context -> {
+                    HttpBinProperties properties = context.getBean(HttpBinProperties.class);
+                    assertThat(properties.url()).isEqualTo(URI.create("http://localhost:8080"));
+                    assertThat(properties.circuitBreaker()).isEqualTo(new HttpBinProperties.CircuitBreakerProperties(
+                            0.8, 10, Duration.ofSeconds(30), Duration.ofMinutes(1)));
+                    assertThat(properties.hedging())
+                            .isEqualTo(new HttpBinProperties.HedgingProperties(true, Duration.ofMillis(20)));
+                });
+    }
+}
@@ -0,0 +1,135 @@
+package inthemix.errorhandling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.UncheckedIOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResilientCallerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreaker circuitBreaker =
+            new CircuitBreaker(0.5, 1, Duration.ofSeconds(10), Duration.ofSeconds(5));
+    private ResilientCaller caller;
+
+    @AfterEach
+    void tearDown() {
+        caller.close();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void makesCallsThatArentHedgedOnTheCallersThread() {
+        caller = caller(false);
+
+        Thread thread = caller.call(timeLeft -> Thread.currentThread());
+
+        assertThat(thread).isSameAs(Thread.currentThread());
+        assertThat(count("success")).isEqualTo(1);
+    }
+
+    @Test
+    void countsCallsThatReturnAfterTheirTimeoutAsTimeouts() {
+        caller = caller(false);
+
+        assertThatThrownBy(() -> caller.call(timeLeft -> sleep(timeLeft.plusMillis(50))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        assertThat(count("timeout")).isEqualTo(1);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void doesntCountTimeoutsOfTheRequestsDeadlineForTheBreaker() {
+        caller = caller(false);
+        withDeadline(Duration.ofMillis(20));
+
+        assertThatThrownBy(() -> caller.call(timeLeft -> sleep(timeLeft.plusMillis(50))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        assertThat(count("timeout")).isEqualTo(1);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void letsAnotherTrialCallThroughAfterOneTimedOutOnTheRequestsDeadline() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 1, Duration.ofSeconds(10), Duration.ofMillis(1));
+        caller = new ResilientCaller("test", Duration.ofMillis(100), circuitBreaker, false, Duration.ofMillis(1),
+                meterRegistry);
+        assertThatThrownBy(() -> caller.call(timeLeft -> sleep(timeLeft.plusMillis(50))));
+        sleep(Duration.ofMillis(5));
+        withDeadline(Duration.ofMillis(20));
+
+        assertThatThrownBy(() -> caller.call(timeLeft -> sleep(timeLeft.plusMillis(50))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void turnsTimeoutsOfTheCallIntoDeadlineExceeded() {
+        caller = caller(false);
+        var timeout = new HttpTimeoutException("read timed out");
+
+        assertThatThrownBy(() -> caller.call(timeLeft -> {
+            throw new UncheckedIOException(timeout);
+        })).isInstanceOf(DeadlineExceededException.class).hasRootCause(timeout);
+
+        assertThat(count("timeout")).isEqualTo(1);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void passesOnErrorsOfHedgedCallsRightAway() {
+        caller = caller(true);
+        for (int i = 0; i < 20; i++) {
+            // enough latencies to hedge on, with the next calls made on other threads
+            caller.call(timeLeft -> sleep(Duration.ofMillis(5)));
+        }
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> caller.call(timeLeft -> {
+            throw new AssertionError("failed on " + Thread.currentThread());
+        })).isInstanceOf(AssertionError.class).hasMessageNotContaining("main");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(100));
+        assertThat(count("failure")).isEqualTo(1);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private ResilientCaller caller(boolean hedging) {
+        return new ResilientCaller("test", Duration.ofMillis(100), circuitBreaker, hedging, Duration.ofMillis(1),
+                meterRegistry);
+    }
+
+    private static void withDeadline(Duration timeout) {
+        var request = new MockHttpServletRequest();
+        request.setAttribute(Deadline.ATTRIBUTE, Deadline.after(timeout));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("downstream.calls").tag("outcome", outcome).counter().count();
+    }
+
+    private static String sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
@@ -0,0 +1,72 @@
+package inthemix.errorhandling;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SimpleServiceTest {
+
+    /** Like httpbin's /delay/2 */
+    private static final HttpServer slowHttpBin = slowHttpBin();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void httpBinUrl(DynamicPropertyRegistry registry) {
+        registry.add("httpbin.url", () -> "http://localhost:" + slowHttpBin.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopHttpBin() {
+        slowHttpBin.stop(0);
+    }
+
+    @Test
+    void failsWithinTheRequestsDeadline() throws Exception {
+        long start = System.nanoTime();
+
+        mockMvc.perform(get("/timeout").header(Deadline.HEADER, "100")).andExpect(status().isGatewayTimeout());
+
+        // rather than after the timeout of SimpleService, which is much longer
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+    }
+
+    private static HttpServer slowHttpBin() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/delay/2", exchange -> {
+                try {
+                    Thread.sleep(Duration.ofSeconds(2));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package inthemix.httpcache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET handler method whose response is identified by a version in the {@link ETagIndex}.
+ * The {@link DeepETagInterceptor} answers matching {@code If-None-Match} requests with a {@code 304}
+ * before the handler runs, so the model never has to be loaded to find out that it didn't change.
+ * <p>
+ * Code that modifies the resource must {@link ETagIndex#bump bump} its key.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface DeepETag {
+
+    /**
+     * The key of the resource in the {@link ETagIndex}, with {@code {name}} placeholders
+     * for URI template variables, like {@code "some/{id}"}.
+     */
+    String value();
+}
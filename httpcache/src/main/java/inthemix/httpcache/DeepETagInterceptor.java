@@ -0,0 +1,100 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Handles conditional requests for {@link DeepETag} handler methods: looks up the current ETag in the
+ * {@link ETagIndex} and answers with {@code 304 Not Modified} when it matches {@code If-None-Match},
+ * without invoking the handler. Otherwise the ETag header is set and the handler renders the response.
+ * <p>
+ * The key of the resource in the index is exposed as the {@link #ETAG_KEY_ATTRIBUTE} request attribute.
+ */
+public class DeepETagInterceptor implements HandlerInterceptor {
+
+    public static final String ETAG_KEY_ATTRIBUTE = DeepETagInterceptor.class.getName() + ".etagKey";
+
+    private final ETagIndex index;
+    private final Map<Method, KeyTemplate> templates = new ConcurrentHashMap<>();
+
+    public DeepETagInterceptor(ETagIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return true;
+        }
+        KeyTemplate template = templates.computeIfAbsent(handlerMethod.getMethod(), m -> KeyTemplate.of(handlerMethod));
+        if (template == KeyTemplate.NONE) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> uriVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String key = template.expand(uriVariables);
+        request.setAttribute(ETAG_KEY_ATTRIBUTE, key);
+        String etag = index.getETag(key);
+        // sets the ETag header, and the 304 status if it matches
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+
+    /**
+     * A {@link DeepETag#value()} parsed once into alternating literals and URI variable names.
+     */
+    record KeyTemplate(List<String> literals, List<String> variables) {
+
+        static final KeyTemplate NONE = new KeyTemplate(List.of(), List.of());
+
+        static KeyTemplate of(HandlerMethod handlerMethod) {
+            DeepETag deepETag = handlerMethod.getMethodAnnotation(DeepETag.class);
+            return deepETag != null ? parse(deepETag.value()) : NONE;
+        }
+
+        static KeyTemplate parse(String template) {
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            int start = 0;
+            int open;
+            while ((open = template.indexOf('{', start)) != -1) {
+                int close = template.indexOf('}', open);
+                if (close == -1) {
+                    throw new IllegalArgumentException("Unclosed variable in @DeepETag(\"" + template + "\")");
+                }
+                literals.add(template.substring(start, open));
+                variables.add(template.substring(open + 1, close));
+                start = close + 1;
+            }
+            literals.add(template.substring(start));
+            return new KeyTemplate(literals, variables);
+        }
+
+        String expand(Map<String, String> uriVariables) {
+            Map<String, String> values = uriVariables != null ? uriVariables : Collections.emptyMap();
+            StringBuilder key = new StringBuilder(literals.get(0));
+            for (int i = 0; i < variables.size(); i++) {
+                String value = values.get(variables.get(i));
+                if (value == null) {
+                    throw new IllegalStateException("No URI variable '" + variables.get(i) + "' for @DeepETag");
+                }
+                key.append(value).append(literals.get(i + 1));
+            }
+            return key.toString();
+        }
+    }
+}
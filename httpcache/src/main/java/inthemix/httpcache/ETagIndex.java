@@ -0,0 +1,25 @@
+package inthemix.httpcache;
+
+/**
+ * Keeps track of the current ETag of resources, so that it's known without loading them.
+ * Implementations must be thread-safe.
+ */
+public interface ETagIndex {
+
+    /**
+     * @return the current ETag of the resource, without quotes; a new one is assigned if the resource isn't known yet
+     */
+    String getETag(String key);
+
+    /**
+     * Assigns a new ETag to the resource, to be called whenever it's modified.
+     *
+     * @return the new ETag
+     */
+    String bump(String key);
+
+    /**
+     * Forgets the resource, e.g. when it's deleted. Its next ETag will differ from all previous ones.
+     */
+    void invalidate(String key);
+}
@@ -1,10 +1,16 @@
 package inthemix.httpcache;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
-import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.time.Duration;
 
 @SpringBootApplication
 public class HttpCacheApplication {
@@ -14,9 +20,50 @@ public class HttpCacheApplication {
 	}
 
 	@Bean
-	FilterRegistrationBean<ShallowEtagHeaderFilter> shallowEtagHeaderFilter() {
-		FilterRegistrationBean registration = new FilterRegistrationBean(new ShallowEtagHeaderFilter());
+	FilterRegistrationBean<StaticResourceFilter> staticResourceFilter(
+			@Value("${httpcache.static-resources.location:classpath:/static/}") String location,
+			@Value("${httpcache.static-resources.immutable-manifest:}") String immutableManifest) throws IOException {
+		// serves what's indexed at startup; anything else still goes to the regular resource handler
+		FilterRegistrationBean<StaticResourceFilter> registration = new FilterRegistrationBean<>(
+				new StaticResourceFilter(new StaticResourceIndex(location, immutableManifest)));
+		registration.addUrlPatterns("/*");
+		return registration;
+	}
+
+	@Bean
+	FilterRegistrationBean<StreamingEtagFilter> shallowEtagHeaderFilter(
+			@Value("${httpcache.shallow-etag.max-buffer-size:64KB}") DataSize maxBufferSize) {
+		// instead of Spring's ShallowEtagHeaderFilter, which buffers responses of any size
+		FilterRegistrationBean<StreamingEtagFilter> registration =
+				new FilterRegistrationBean<>(new StreamingEtagFilter((int) maxBufferSize.toBytes()));
 		registration.addUrlPatterns("/shallow/*");
 		return registration;
 	}
+
+	@Bean
+	FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(
+			@Value("${httpcache.response-cache.ttl:10s}") Duration ttl,
+			@Value("${httpcache.response-cache.stale-while-revalidate:30s}") Duration staleWhileRevalidate,
+			@Value("${httpcache.response-cache.max-size:16MB}") DataSize maxSize,
+			@Value("${httpcache.response-cache.max-entry-size:1MB}") DataSize maxEntrySize, ETagIndex eTagIndex) {
+		FilterRegistrationBean<ResponseCacheFilter> registration = new FilterRegistrationBean<>(new ResponseCacheFilter(
+				ttl, staleWhileRevalidate, maxSize.toBytes(), (int) maxEntrySize.toBytes(), eTagIndex));
+		registration.addUrlPatterns("/deep/*");
+		return registration;
+	}
+
+	@Bean
+	ETagIndex eTagIndex(@Value("${httpcache.etag-index.max-entries:100000}") int maxEntries) {
+		return new InMemoryETagIndex(maxEntries);
+	}
+
+	@Bean
+	WebMvcConfigurer deepETagConfigurer(ETagIndex eTagIndex) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void addInterceptors(InterceptorRegistry registry) {
+				registry.addInterceptor(new DeepETagInterceptor(eTagIndex));
+			}
+		};
+	}
 }
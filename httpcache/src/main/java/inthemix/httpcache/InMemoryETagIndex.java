@@ -0,0 +1,66 @@
+package inthemix.httpcache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ETagIndex} that hands out ETags from a counter, prefixed with the startup time so that ETags issued
+ * before a restart never match again. Only valid in a single instance: multiple instances need a shared index.
+ * <p>
+ * The index is bounded: when full, an arbitrary entry is evicted. That's always safe, since a forgotten resource
+ * simply gets a new ETag and clients fetch it once more.
+ */
+public class InMemoryETagIndex implements ETagIndex {
+
+    private final int maxEntries;
+    private final String prefix = Long.toString(System.currentTimeMillis(), 36) + '-';
+    private final AtomicLong versions = new AtomicLong();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+    public InMemoryETagIndex(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public String getETag(String key) {
+        String etag = etags.get(key);
+        if (etag == null) {
+            makeRoom();
+            etag = etags.computeIfAbsent(key, k -> nextETag());
+        }
+        return etag;
+    }
+
+    @Override
+    public String bump(String key) {
+        if (!etags.containsKey(key)) {
+            makeRoom();
+        }
+        String etag = nextETag();
+        etags.put(key, etag);
+        return etag;
+    }
+
+    @Override
+    public void invalidate(String key) {
+        etags.remove(key);
+    }
+
+    public int size() {
+        return etags.size();
+    }
+
+    private String nextETag() {
+        return prefix + versions.incrementAndGet();
+    }
+
+    private void makeRoom() {
+        Iterator<String> keys = etags.keySet().iterator();
+        while (etags.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+}
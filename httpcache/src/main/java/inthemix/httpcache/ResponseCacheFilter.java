@@ -0,0 +1,326 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the serialized bytes of successful GET responses, so that hits skip the handler and message conversion
+ * altogether. Entries are keyed by path, query string and {@code Accept} header, and served gzipped to clients that
+ * accept it from a copy compressed once when the entry was rendered.
+ * <p>
+ * Entries are fresh for {@code ttl}. After that, for another {@code staleWhileRevalidate}, the first request renders
+ * the response again while concurrent requests are still served the stale entry instead of waiting. Concurrent misses
+ * are coalesced: one request renders the response and the others wait for its result.
+ * Unsafe requests invalidate all cached representations of their path.
+ * <p>
+ * Conditional requests are answered from the cache too. Responses of {@link DeepETag} handlers are only served
+ * from the cache while their ETag is still the current one in the {@link ETagIndex}, so that bumping or invalidating
+ * a resource anywhere evicts its cached responses, like an unsafe request to its URI does.
+ * Responses that set cookies or are marked {@code no-store} or {@code private} aren't cached.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    /** How long to wait for a concurrent request that renders the same response, before rendering it ourselves */
+    private static final long COALESCE_TIMEOUT_MILLIS = 5000;
+
+    private static final int MIN_GZIP_SIZE = 256;
+
+    /** Headers that are either set when serving a cached response or not valid for all clients */
+    private static final Set<String> UNCACHED_HEADERS = caseInsensitiveSet(HttpHeaders.CONTENT_LENGTH,
+        HttpHeaders.CONTENT_ENCODING, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.DATE, HttpHeaders.ETAG);
+
+    /** Conditional headers are hidden from the handler when filling the cache, since we need the full response */
+    private static final Set<String> CONDITIONAL_HEADERS = caseInsensitiveSet(HttpHeaders.IF_NONE_MATCH,
+        HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_MATCH, HttpHeaders.IF_UNMODIFIED_SINCE);
+
+    private final SerializedResponseCache cache;
+    private final ETagIndex etagIndex;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final int maxEntrySize;
+    private final Map<SerializedResponseCache.Key, CompletableFuture<SerializedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxSize maximum total size of the cached bodies, in bytes
+     * @param maxEntrySize maximum size of a single body to cache, in bytes
+     * @param etagIndex the index of the {@link DeepETagInterceptor}, to check cached {@link DeepETag} responses against
+     */
+    public ResponseCacheFilter(Duration ttl, Duration staleWhileRevalidate, long maxSize, int maxEntrySize,
+                               ETagIndex etagIndex) {
+        this.cache = new SerializedResponseCache(maxSize);
+        this.etagIndex = etagIndex;
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = ttl.plus(staleWhileRevalidate).toNanos();
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        String method = request.getMethod();
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            if (HttpMethod.OPTIONS.matches(method) || HttpMethod.TRACE.matches(method)) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            // invalidate afterwards as well, in case a concurrent GET cached the old state in the meantime
+            cache.invalidate(request.getRequestURI());
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                cache.invalidate(request.getRequestURI());
+            }
+            return;
+        }
+
+        String query = request.getQueryString();
+        var key = new SerializedResponseCache.Key(
+            query == null ? request.getRequestURI() : request.getRequestURI() + '?' + query,
+            request.getHeader(HttpHeaders.ACCEPT));
+        long now = System.nanoTime();
+        SerializedResponse cached = current(key);
+        if (cached != null && cached.ageNanos(now) < ttlNanos) {
+            serve(cached, request, response);
+            return;
+        }
+        if (HttpMethod.HEAD.matches(method)) {
+            // a HEAD response has no body to cache
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        var rendering = new CompletableFuture<SerializedResponse>();
+        CompletableFuture<SerializedResponse> other = inFlight.putIfAbsent(key, rendering);
+        if (other == null) {
+            render(key, rendering, request, response, filterChain);
+        } else if (cached != null && cached.ageNanos(now) < staleNanos) {
+            serve(cached, request, response);
+        } else {
+            SerializedResponse rendered = await(other);
+            if (rendered != null) {
+                serve(rendered, request, response);
+            } else {
+                // not cacheable, or the other request failed or is too slow
+                filterChain.doFilter(request, response);
+            }
+        }
+    }
+
+    /**
+     * @return the cached response, unless it's a {@link DeepETag} response whose ETag has changed since
+     */
+    private SerializedResponse current(SerializedResponseCache.Key key) {
+        SerializedResponse cached = cache.get(key);
+        if (cached == null || cached.etagKey() == null
+            || isQuoted(cached.etag(), etagIndex.getETag(cached.etagKey()))) {
+            return cached;
+        }
+        cache.remove(key, cached);
+        return null;
+    }
+
+    private static boolean isQuoted(String etag, String value) {
+        return etag.length() == value.length() + 2 && etag.charAt(0) == '"' && etag.startsWith(value, 1)
+            && etag.charAt(etag.length() - 1) == '"';
+    }
+
+    private void render(SerializedResponseCache.Key key, CompletableFuture<SerializedResponse> rendering,
+                        HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        SerializedResponse rendered = null;
+        try {
+            long generation = cache.generation();
+            var responseWrapper = new ContentCachingResponseWrapper(response);
+            filterChain.doFilter(new UnconditionalRequest(request), responseWrapper);
+            rendered = toCacheable(responseWrapper, request);
+            if (rendered != null) {
+                cache.put(key, rendered, generation);
+                serve(rendered, request, response);
+            } else {
+                responseWrapper.copyBodyToResponse();
+            }
+        } finally {
+            inFlight.remove(key, rendering);
+            rendering.complete(rendered);
+        }
+    }
+
+    private SerializedResponse toCacheable(ContentCachingResponseWrapper response, HttpServletRequest request)
+        throws IOException {
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.getContentSize() > maxEntrySize
+            || response.containsHeader(HttpHeaders.SET_COOKIE)) {
+            return null;
+        }
+        String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+        if (cacheControl != null && (cacheControl.contains("no-store") || cacheControl.contains("private"))) {
+            return null;
+        }
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        String etagKey = (String) request.getAttribute(DeepETagInterceptor.ETAG_KEY_ATTRIBUTE);
+        if (etagKey != null && (etag == null || !isQuoted(etag, etagIndex.getETag(etagKey)))) {
+            // bumped while rendering, so this is already outdated
+            return null;
+        }
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : response.getHeaderNames()) {
+            if (!UNCACHED_HEADERS.contains(name)) {
+                headers.put(name, List.copyOf(response.getHeaders(name)));
+            }
+        }
+        if (response.getContentType() != null) {
+            headers.put(HttpHeaders.CONTENT_TYPE, List.of(response.getContentType()));
+        }
+        byte[] body = response.getContentAsByteArray();
+        return new SerializedResponse(headers, etag, etagKey, body, gzip(body), System.nanoTime());
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        if (body.length < MIN_GZIP_SIZE) {
+            return null;
+        }
+        var compressed = new ByteArrayOutputStream(body.length / 2);
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.size() < body.length ? compressed.toByteArray() : null;
+    }
+
+    private void serve(SerializedResponse cached, HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+
+        boolean gzip = cached.gzippedBody() != null && acceptsGzip(request);
+        for (Map.Entry<String, List<String>> header : cached.headers().entrySet()) {
+            List<String> values = header.getValue();
+            response.setHeader(header.getKey(), values.get(0));
+            for (int i = 1; i < values.size(); i++) {
+                response.addHeader(header.getKey(), values.get(i));
+            }
+        }
+        if (cached.gzippedBody() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String etag = cached.etag();
+        if (etag != null) {
+            // the gzipped representation differs byte-wise, so it only matches the identity one weakly
+            if (gzip && !etag.startsWith("W/")) {
+                etag = "W/" + etag;
+            }
+            response.setHeader(HttpHeaders.ETAG, etag);
+            if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                return;
+            }
+        }
+        byte[] body = gzip ? cached.gzippedBody() : cached.body();
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentLength(body.length);
+        if (!HttpMethod.HEAD.matches(request.getMethod())) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> acceptEncodings = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (acceptEncodings.hasMoreElements()) {
+            for (String coding : acceptEncodings.nextElement().split(",")) {
+                String normalized = coding.replace(" ", "");
+                if (normalized.regionMatches(true, 0, "gzip", 0, 4) && qualityOf(normalized) > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double qualityOf(String coding) {
+        int q = coding.indexOf(";q=");
+        try {
+            return q == -1 ? 1 : Double.parseDouble(coding.substring(q + 3));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static SerializedResponse await(CompletableFuture<SerializedResponse> rendering) {
+        try {
+            return rendering.get(COALESCE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static Set<String> caseInsensitiveSet(String... values) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Collections.addAll(set, values);
+        return set;
+    }
+
+    /**
+     * Hides the conditional headers from the handler.
+     */
+    private static class UnconditionalRequest extends HttpServletRequestWrapper {
+
+        UnconditionalRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return CONDITIONAL_HEADERS.contains(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return CONDITIONAL_HEADERS.contains(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            return CONDITIONAL_HEADERS.contains(name) ? -1 : super.getDateHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = new ArrayList<>();
+            for (String name : Collections.list(super.getHeaderNames())) {
+                if (!CONDITIONAL_HEADERS.contains(name)) {
+                    names.add(name);
+                }
+            }
+            return Collections.enumeration(names);
+        }
+    }
+}
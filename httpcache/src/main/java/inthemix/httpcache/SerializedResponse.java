@@ -0,0 +1,27 @@
+package inthemix.httpcache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rendered {@code 200 OK} response as cached by the {@link ResponseCacheFilter}: the headers set by the handler,
+ * the serialized body and optionally a pre-gzipped copy of it.
+ *
+ * @param etagKey the key of a {@link DeepETag} response in the {@link ETagIndex}, or {@code null}
+ * @param gzippedBody the gzipped body, or {@code null} if the body is too small or didn't compress
+ * @param createdNanos {@link System#nanoTime()} at which the response was rendered
+ */
+record SerializedResponse(Map<String, List<String>> headers, String etag, String etagKey, byte[] body,
+                          byte[] gzippedBody, long createdNanos) {
+
+    /** Rough overhead of the entry, its key and its header map, in bytes */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    long weight() {
+        return ENTRY_OVERHEAD + body.length + (gzippedBody != null ? gzippedBody.length : 0);
+    }
+
+    long ageNanos(long nowNanos) {
+        return nowNanos - createdNanos;
+    }
+}
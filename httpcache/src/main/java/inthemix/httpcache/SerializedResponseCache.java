@@ -0,0 +1,141 @@
+package inthemix.httpcache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of {@link SerializedResponse}s, bounded by the total size of their bodies rather than their number.
+ * <p>
+ * Lookups don't lock: entries are read from a {@link ConcurrentHashMap}, and a hit only sets a flag on the entry.
+ * Changes are short critical sections on a single lock, which also guards the order of the entries for eviction.
+ * Eviction gives recently used entries a second chance (CLOCK), which approximates LRU without reordering on reads.
+ */
+class SerializedResponseCache {
+
+    /**
+     * @param path request URI plus query string
+     * @param accept the request's {@code Accept} header, since the handler may render a different representation
+     */
+    record Key(String path, String accept) { }
+
+    private static final class Entry {
+
+        final SerializedResponse response;
+        /** Set on every hit, cleared when the entry gets a second chance at eviction */
+        volatile boolean referenced;
+
+        Entry(SerializedResponse response) {
+            this.response = response;
+        }
+    }
+
+    private final long maxWeight;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    /** The entries in the order they're considered for eviction, guarded by {@code this} */
+    private final LinkedHashMap<Key, Entry> evictionOrder = new LinkedHashMap<>();
+    private long weight;
+    /** Incremented on every invalidation, so that responses rendered before one aren't cached after it */
+    private volatile long generation;
+
+    SerializedResponseCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    SerializedResponse get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        // only write when needed, to not have all hits on a popular entry contend on its cache line
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.response;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores the response, unless there were invalidations since the given {@link #generation()}: the response
+     * might have been rendered from data that's outdated by now.
+     */
+    synchronized void put(Key key, SerializedResponse response, long renderedInGeneration) {
+        if (renderedInGeneration != generation) {
+            return;
+        }
+        remove(key);
+        long entryWeight = response.weight();
+        if (entryWeight > maxWeight) {
+            return;
+        }
+        while (weight + entryWeight > maxWeight && !evictionOrder.isEmpty()) {
+            evictOne();
+        }
+        Entry entry = new Entry(response);
+        entries.put(key, entry);
+        evictionOrder.put(key, entry);
+        weight += entryWeight;
+    }
+
+    private void evictOne() {
+        // bounded, since concurrent hits may set the flags again while we go around
+        for (int secondChances = evictionOrder.size(); ; secondChances--) {
+            Iterator<Map.Entry<Key, Entry>> eldest = evictionOrder.entrySet().iterator();
+            Map.Entry<Key, Entry> candidate = eldest.next();
+            eldest.remove();
+            Entry entry = candidate.getValue();
+            if (entry.referenced && secondChances > 0) {
+                entry.referenced = false;
+                evictionOrder.put(candidate.getKey(), entry);
+            } else {
+                entries.remove(candidate.getKey());
+                weight -= entry.response.weight();
+                return;
+            }
+        }
+    }
+
+    synchronized void remove(Key key) {
+        Entry removed = evictionOrder.remove(key);
+        if (removed != null) {
+            entries.remove(key);
+            weight -= removed.response.weight();
+        }
+    }
+
+    /**
+     * Removes the response, unless it has been replaced by another one in the meantime.
+     */
+    synchronized void remove(Key key, SerializedResponse response) {
+        Entry entry = evictionOrder.get(key);
+        if (entry != null && entry.response == response) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Removes all representations of the resource at the given URI, regardless of query string and {@code Accept}.
+     */
+    synchronized void invalidate(String requestUri) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> iterator = evictionOrder.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            String path = entry.getKey().path();
+            if (path.startsWith(requestUri)
+                && (path.length() == requestUri.length() || path.charAt(requestUri.length()) == '?')) {
+                entries.remove(entry.getKey());
+                weight -= entry.getValue().response.weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
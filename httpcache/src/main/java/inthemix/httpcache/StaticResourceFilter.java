@@ -0,0 +1,91 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Serves the resources of a {@link StaticResourceIndex} without reading, hashing or compressing anything per request:
+ * conditional requests are answered from the precomputed ETag and last-modified date, and clients that accept gzip
+ * get the variant that was compressed at startup.
+ * <p>
+ * Larger bodies are handed to Tomcat's {@code sendfile} support when available, so they're copied from the page cache
+ * to the socket by the kernel. Smaller ones, or all of them on other servers, are written from a memory-mapped buffer.
+ * <p>
+ * Range requests and paths that aren't indexed are left to the regular resource handling.
+ */
+public class StaticResourceFilter extends OncePerRequestFilter {
+
+    // request attributes of Tomcat's sendfile support, see org.apache.coyote.Constants
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** Below this size, writing the bytes is cheaper than the extra system calls; same default as Tomcat uses */
+    private static final long MIN_SENDFILE_SIZE = 48 * 1024;
+
+    private final StaticResourceIndex index;
+
+    public StaticResourceFilter(StaticResourceIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        String method = request.getMethod();
+        StaticResourceIndex.StaticResource resource = null;
+        if ((HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method))
+            && request.getHeader(HttpHeaders.RANGE) == null) {
+            resource = index.get(request.getRequestURI().substring(request.getContextPath().length()));
+        }
+        if (resource == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        StaticResourceIndex.Variant variant = resource.identity();
+        if (resource.gzipped() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (ResponseCacheFilter.acceptsGzip(request)) {
+                variant = resource.gzipped();
+            }
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, resource.cacheControl());
+        if (new ServletWebRequest(request, response).checkNotModified(variant.etag(), resource.lastModified())) {
+            return;
+        }
+        response.setContentType(resource.contentType().toString());
+        response.setContentLengthLong(variant.length());
+        if (variant == resource.gzipped()) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (HttpMethod.HEAD.matches(method)) {
+            return;
+        }
+        if (variant.length() >= MIN_SENDFILE_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, variant.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, variant.length());
+            return;
+        }
+        // duplicated so that concurrent requests each get their own position
+        ByteBuffer content = variant.content().duplicate();
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (content.hasRemaining()) {
+            channel.write(content);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package inthemix.httpcache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Index of the static resources under a classpath location, built once at startup: every resource is hashed into a
+ * strong ETag, compressible ones get a gzipped variant, and both are written to a temporary directory so that they
+ * can be served straight from the file system, with {@code sendfile} where the server supports it.
+ * <p>
+ * Resources that never change under the same path are marked immutable; all others must be revalidated, which the
+ * ETag makes cheap. A resource counts as immutable when its name contains its own content hash, like
+ * {@code app.3f2a9c1b.js} or {@code app-<md5>.js}: a hex or base64url prefix of at least 8 characters of its SHA-256 or
+ * MD5, after a '.' or '-' and before a later '.'. Names that merely look like that, like
+ * {@code jquery.dataTables-responsive.js}, don't match their content and aren't. Resources fingerprinted differently
+ * can be listed in a manifest instead: a text file with one path per line, relative to the location.
+ */
+public class StaticResourceIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticResourceIndex.class);
+
+    /** Shortest part of a hash that counts as a fingerprint */
+    private static final int MIN_FINGERPRINT_LENGTH = 8;
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    private static final int MIN_GZIP_SIZE = 256;
+
+    /**
+     * A file to serve, with its length and a read-only mapping of it for servers without {@code sendfile}.
+     */
+    record Variant(Path file, long length, String etag, MappedByteBuffer content) { }
+
+    /**
+     * @param gzipped the gzipped variant, or {@code null} if the resource isn't compressible
+     */
+    record StaticResource(MediaType contentType, long lastModified, String cacheControl, Variant identity,
+                          Variant gzipped) { }
+
+    private final Map<String, StaticResource> resources = new ConcurrentHashMap<>();
+
+    /**
+     * @param location a classpath location like {@code classpath:/static/}
+     */
+    public StaticResourceIndex(String location) throws IOException {
+        this(location, null);
+    }
+
+    /**
+     * @param location a classpath location like {@code classpath:/static/}
+     * @param immutableManifest location of a file listing the paths of the resources that are immutable although
+     *                          their name doesn't contain their content hash, or {@code null}
+     */
+    public StaticResourceIndex(String location, String immutableManifest) throws IOException {
+        Path directory = Files.createTempDirectory("static-resource-index");
+        directory.toFile().deleteOnExit();
+        String base = location.endsWith("/") ? location : location + '/';
+        var resolver = new PathMatchingResourcePatternResolver();
+        Set<String> immutablePaths = readManifest(resolver, immutableManifest);
+        String baseUrl = resolver.getResource(base).getURL().toString();
+        for (Resource resource : resolver.getResources(base + "**")) {
+            if (!resource.isReadable() || resource.getURL().toString().endsWith("/")) {
+                continue;
+            }
+            String path = resource.getURL().toString().substring(baseUrl.length());
+            resources.put('/' + path, index(resource, path, directory, immutablePaths.contains(path)));
+        }
+        logger.info("Indexed {} static resources from {}", resources.size(), location);
+    }
+
+    /**
+     * @param path the request path within the application, starting with a '/'
+     * @return the resource, or {@code null} if there's no static resource at that path
+     */
+    public StaticResource get(String path) {
+        return resources.get(path);
+    }
+
+    public int size() {
+        return resources.size();
+    }
+
+    private static Set<String> readManifest(ResourceLoader resourceLoader, String location) throws IOException {
+        if (location == null || location.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> paths = new HashSet<>();
+        try (InputStream in = resourceLoader.getResource(location).getInputStream()) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+                String path = line.strip();
+                if (!path.isEmpty() && !path.startsWith("#")) {
+                    paths.add(path.startsWith("/") ? path.substring(1) : path);
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static StaticResource index(Resource resource, String path, Path directory, boolean immutable)
+        throws IOException {
+        byte[] content;
+        try (InputStream in = resource.getInputStream()) {
+            content = in.readAllBytes();
+        }
+        MediaType contentType = MediaTypeFactory.getMediaType(path).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        byte[] sha256 = digest("SHA-256", content);
+        // half of the hash is plenty to tell versions apart and keeps the header short
+        String hash = HexFormat.of().formatHex(sha256, 0, 16);
+        Path file = directory.resolve(path);
+        createDirectories(file.getParent());
+        Variant identity = write(file, content, '"' + hash + '"');
+
+        Variant gzipped = null;
+        if (content.length >= MIN_GZIP_SIZE && isCompressible(contentType)) {
+            byte[] compressed = gzip(content);
+            if (compressed.length < content.length) {
+                gzipped = write(directory.resolve(path + ".gz"), compressed, "\"" + hash + "-gzip\"");
+            }
+        }
+        boolean fingerprinted = immutable || isFingerprinted(path.substring(path.lastIndexOf('/') + 1),
+            List.of(sha256, digest("MD5", content)));
+        String cacheControl = fingerprinted ? IMMUTABLE : REVALIDATE;
+        // rounded to seconds, since that's all that Last-Modified and If-Modified-Since can express
+        long lastModified = resource.lastModified() / 1000 * 1000;
+        return new StaticResource(contentType, lastModified, cacheControl, identity, gzipped);
+    }
+
+    /**
+     * Like {@link Files#createDirectories}, but deletes the directories on exit, like the files in them.
+     */
+    private static void createDirectories(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            createDirectories(directory.getParent());
+            Files.createDirectory(directory);
+            // registered before the files in it, so deleted after them
+            directory.toFile().deleteOnExit();
+        }
+    }
+
+    private static Variant write(Path file, byte[] content, String etag) throws IOException {
+        Files.write(file, content);
+        file.toFile().deleteOnExit();
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new Variant(file, content.length, etag, channel.map(FileChannel.MapMode.READ_ONLY, 0, content.length));
+        }
+    }
+
+    private static boolean isCompressible(MediaType contentType) {
+        String subtype = contentType.getSubtype();
+        return contentType.getType().equals("text") || subtype.equals("json") || subtype.endsWith("+json")
+            || subtype.equals("javascript") || subtype.equals("xml") || subtype.endsWith("+xml");
+    }
+
+    /**
+     * @return whether a part of the name after a '.' or '-' and before a later '.' is the start of one of the hashes,
+     *         in hex or base64url
+     */
+    static boolean isFingerprinted(String name, List<byte[]> hashes) {
+        List<String> encoded = new ArrayList<>();
+        for (byte[] hash : hashes) {
+            encoded.add(HexFormat.of().formatHex(hash));
+            encoded.add(Base64.getUrlEncoder().withoutPadding().encodeToString(hash));
+        }
+        for (int start = 0; start < name.length(); start++) {
+            if (name.charAt(start) != '.' && name.charAt(start) != '-') {
+                continue;
+            }
+            for (int end = name.indexOf('.', start + 1); end != -1; end = name.indexOf('.', end + 1)) {
+                String part = name.substring(start + 1, end);
+                if (part.length() >= MIN_FINGERPRINT_LENGTH && startsAnyOf(encoded, part)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsAnyOf(List<String> hashes, String part) {
+        for (String hash : hashes) {
+            // hex may be in upper case, base64 is case-sensitive
+            if (hash.startsWith(part) || hash.regionMatches(true, 0, part, 0, part.length()) && isHex(part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHex(String part) {
+        for (int i = 0; i < part.length(); i++) {
+            if (Character.digit(part.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] digest(String algorithm, byte[] content) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        var compressed = new ByteArrayOutputStream(content.length / 2);
+        try (var gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,324 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Alternative to Spring's {@code ShallowEtagHeaderFilter} that hashes the response body incrementally while it's
+ * written, instead of copying the full body and computing an MD5 over it afterwards.
+ * <p>
+ * Bodies up to {@code maxBufferSize} bytes are buffered, so that the ETag can be sent as a header before the body and
+ * a matching {@code If-None-Match} can be answered with a {@code 304}. Once a body grows beyond that, the buffered part
+ * is written out and the rest streams through without an ETag: large responses don't get held in memory and don't
+ * have their time to first byte delayed until the last byte is known.
+ * <p>
+ * The ETag combines a CRC32C and a CRC32 of the body. Both are intrinsified by the JVM, which makes them much cheaper
+ * than MD5, and the two different polynomials together give a 64-bit value. That's enough to tell versions of the same
+ * resource apart, which is all an ETag needs to do; it's not meant to resist deliberate collisions.
+ * <p>
+ * Asynchronous responses get no ETag: when the handler started async processing, or sets a {@link WriteListener}
+ * for non-blocking writes, what was buffered is written out and the rest streams through to the response.
+ */
+public class StreamingEtagFilter extends OncePerRequestFilter {
+
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxBufferSize;
+
+    public StreamingEtagFilter() {
+        this(DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    public StreamingEtagFilter(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        var wrapper = new HashingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+        } finally {
+            if (isAsyncStarted(request)) {
+                // the body is written later, after this filter has returned
+                wrapper.streamRest();
+            } else {
+                wrapper.complete(request);
+            }
+        }
+    }
+
+    private class HashingResponseWrapper extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private final CRC32C crc32c = new CRC32C();
+        private final CRC32 crc32 = new CRC32();
+        private byte[] buffer = new byte[Math.min(1024, maxBufferSize)];
+        private int count;
+        private long contentLength = -1;
+        /** Whether the body is still being buffered; false once it's too large or the response was committed otherwise */
+        private boolean buffering = true;
+        private HashingOutputStream outputStream;
+        private PrintWriter writer;
+
+        HashingResponseWrapper(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new HashingOutputStream(response.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            setContentLengthLong(len);
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            if (buffering && count == 0 && len > maxBufferSize) {
+                // known to be too large up front: don't even start buffering
+                buffering = false;
+                buffer = null;
+                super.setContentLengthLong(len);
+            } else if (buffering) {
+                contentLength = len;
+            } else {
+                super.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (buffering && HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (buffering && HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            // like ContentCachingResponseWrapper: flushing while buffering would commit the response without an ETag
+            if (!buffering) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            stopBuffering();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            stopBuffering();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            stopBuffering();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (buffering) {
+                contentLength = -1;
+            }
+            resetBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (buffering) {
+                count = 0;
+                crc32c.reset();
+                crc32.reset();
+            }
+        }
+
+        private void write(byte[] bytes, int off, int len) throws IOException {
+            if (!buffering) {
+                response.getOutputStream().write(bytes, off, len);
+                return;
+            }
+            if (count + len > maxBufferSize) {
+                // too large to hold on to: send what we have and stream the rest without an ETag
+                stopBuffering();
+                response.getOutputStream().write(bytes, off, len);
+                return;
+            }
+            ensureCapacity(count + len);
+            System.arraycopy(bytes, off, buffer, count, len);
+            count += len;
+            crc32c.update(bytes, off, len);
+            crc32.update(bytes, off, len);
+        }
+
+        private void write(int b) throws IOException {
+            if (buffering && count < maxBufferSize) {
+                ensureCapacity(count + 1);
+                buffer[count++] = (byte) b;
+                crc32c.update(b);
+                crc32.update(b);
+            } else {
+                stopBuffering();
+                response.getOutputStream().write(b);
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(maxBufferSize, Math.max(capacity, buffer.length * 2)));
+            }
+        }
+
+        private void stopBuffering() throws IOException {
+            if (!buffering) {
+                return;
+            }
+            buffering = false;
+            if (contentLength >= 0) {
+                response.setContentLengthLong(contentLength);
+            }
+            if (count > 0) {
+                response.getOutputStream().write(buffer, 0, count);
+            }
+            buffer = null;
+        }
+
+        /**
+         * Writes out what's buffered, and lets the rest of the body through without an ETag.
+         */
+        void streamRest() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            stopBuffering();
+        }
+
+        void complete(HttpServletRequest request) throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (!buffering) {
+                return;
+            }
+            buffering = false;
+            int status = response.getStatus();
+            if (count > 0 && status >= 200 && status < 300 && !response.isCommitted()
+                && !response.containsHeader(HttpHeaders.ETAG) && !isNoStore(response)) {
+                String etag = String.format("\"0%08x%08x\"", crc32c.getValue(), crc32.getValue());
+                if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                    return;
+                }
+            }
+            if (!response.isCommitted()) {
+                response.setContentLengthLong(contentLength >= 0 && count == 0 ? contentLength : count);
+            }
+            if (count > 0) {
+                response.getOutputStream().write(buffer, 0, count);
+            }
+        }
+
+        private static boolean isNoStore(HttpServletResponse response) {
+            String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+            return cacheControl != null && cacheControl.contains("no-store");
+        }
+
+        private class HashingOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream target;
+
+            HashingOutputStream(ServletOutputStream target) {
+                this.target = target;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                HashingResponseWrapper.this.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                HashingResponseWrapper.this.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (!buffering) {
+                    response.getOutputStream().flush();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return buffering || target.isReady();
+            }
+
+            /**
+             * Like {@code ContentCachingResponseWrapper}, registers the listener with the wrapped response's stream,
+             * whose container calls it. Buffering stops first, so non-blocking writes go straight to that stream.
+             */
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    stopBuffering();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                target.setWriteListener(writeListener);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package inthemix.httpcache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DeepETagInterceptorTest {
+
+    private final InMemoryETagIndex index = new InMemoryETagIndex(100);
+    private SomeController controller;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        controller = spy(new SomeController(index));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+            .addInterceptors(new DeepETagInterceptor(index))
+            .build();
+    }
+
+    @Test
+    void answersAMatchingIfNoneMatchWithoutInvokingTheHandler() throws Exception {
+        String etag = '"' + index.getETag("some/1") + '"';
+
+        mockMvc.perform(get("/deep/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(head("/deep/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+
+        verify(controller, never()).deepETag(anyString());
+    }
+
+    @Test
+    void invokesTheHandlerForAnOutdatedETag() throws Exception {
+        String etag = '"' + index.getETag("some/1") + '"';
+        index.bump("some/1");
+
+        mockMvc.perform(get("/deep/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, '"' + index.getETag("some/1") + '"'))
+            .andExpect(jsonPath("$.id").value("1"));
+
+        verify(controller).deepETag("1");
+    }
+
+    @Test
+    void keysTheETagByUriVariables() throws Exception {
+        String etag = '"' + index.getETag("some/1") + '"';
+
+        mockMvc.perform(get("/deep/2").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk());
+
+        verify(controller).deepETag("2");
+    }
+}
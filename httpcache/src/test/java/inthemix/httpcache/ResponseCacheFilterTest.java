@@ -0,0 +1,69 @@
+package inthemix.httpcache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ResponseCacheFilterTest {
+
+    private final InMemoryETagIndex index = new InMemoryETagIndex(100);
+    private SomeController controller;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        controller = spy(new SomeController(index));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+            .addInterceptors(new DeepETagInterceptor(index))
+            .addFilter(new ResponseCacheFilter(Duration.ofMinutes(1), Duration.ofMinutes(1), 1 << 20, 1 << 16, index),
+                "/deep/*")
+            .build();
+    }
+
+    @Test
+    void servesHitsWithoutInvokingTheHandler() throws Exception {
+        String etag = getETag();
+
+        assertThat(getETag()).isEqualTo(etag);
+        verify(controller, times(1)).deepETag(anyString());
+    }
+
+    @Test
+    void rendersAgainWhenTheETagIsBumpedElsewhere() throws Exception {
+        String etag = getETag();
+
+        index.bump("some/1");
+
+        assertThat(getETag()).isNotEqualTo(etag).isEqualTo('"' + index.getETag("some/1") + '"');
+        mockMvc.perform(get("/deep/1").header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isOk());
+        verify(controller, times(2)).deepETag(anyString());
+    }
+
+    @Test
+    void rendersAgainWhenTheETagIsInvalidated() throws Exception {
+        String etag = getETag();
+
+        index.invalidate("some/1");
+
+        assertThat(getETag()).isNotEqualTo(etag);
+        verify(controller, times(2)).deepETag(anyString());
+    }
+
+    private String getETag() throws Exception {
+        return mockMvc.perform(get("/deep/1"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
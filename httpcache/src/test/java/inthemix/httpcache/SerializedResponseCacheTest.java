@@ -0,0 +1,75 @@
+package inthemix.httpcache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerializedResponseCacheTest {
+
+    /** Each response weighs a little over 1KB */
+    private final SerializedResponseCache cache = new SerializedResponseCache(3 * 1024 + 3 * 512);
+
+    @Test
+    void evictsEntriesThatWerentHitSinceTheyWereConsidered() {
+        put("/a");
+        put("/b");
+        put("/c");
+        cache.get(key("/a"));
+
+        put("/d");
+
+        assertThat(cache.get(key("/a"))).isNotNull();
+        assertThat(cache.get(key("/b"))).isNull();
+        assertThat(cache.get(key("/c"))).isNotNull();
+        assertThat(cache.get(key("/d"))).isNotNull();
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    void invalidatesAllRepresentationsOfAPath() {
+        put("/a");
+        put("/a?page=2");
+        put("/ab");
+
+        cache.invalidate("/a");
+
+        assertThat(cache.get(key("/a"))).isNull();
+        assertThat(cache.get(key("/a?page=2"))).isNull();
+        assertThat(cache.get(key("/ab"))).isNotNull();
+    }
+
+    @Test
+    void doesNotCacheResponsesRenderedBeforeAnInvalidation() {
+        long generation = cache.generation();
+        cache.invalidate("/a");
+
+        cache.put(key("/a"), response(), generation);
+
+        assertThat(cache.get(key("/a"))).isNull();
+    }
+
+    @Test
+    void removesOnlyTheGivenResponse() {
+        put("/a");
+        SerializedResponse replaced = cache.get(key("/a"));
+        put("/a");
+
+        cache.remove(key("/a"), replaced);
+
+        assertThat(cache.get(key("/a"))).isNotNull().isNotSameAs(replaced);
+    }
+
+    private void put(String path) {
+        cache.put(key(path), response(), cache.generation());
+    }
+
+    private static SerializedResponseCache.Key key(String path) {
+        return new SerializedResponseCache.Key(path, "application/json");
+    }
+
+    private static SerializedResponse response() {
+        return new SerializedResponse(Map.of(), null, null, new byte[1024], null, System.nanoTime());
+    }
+}
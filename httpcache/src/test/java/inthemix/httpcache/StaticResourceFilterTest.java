@@ -0,0 +1,143 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaticResourceFilterTest {
+
+    private static StaticResourceFilter filter;
+    private static String css;
+
+    private MockFilterChain chain;
+
+    @BeforeAll
+    static void indexResources() throws IOException {
+        filter = new StaticResourceFilter(new StaticResourceIndex("classpath:/static-resource-filter/",
+            "classpath:/static-resource-filter-immutable.txt"));
+        try (InputStream in = StaticResourceFilterTest.class.getResourceAsStream("/static-resource-filter/css/site.css")) {
+            css = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void servesIndexedResources() throws Exception {
+        MockHttpServletResponse response = perform(request("GET", "/css/site.css"));
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(response.getContentType()).isEqualTo("text/css");
+        assertThat(response.getContentLengthLong()).isEqualTo(css.length());
+        assertThat(response.getContentAsString()).isEqualTo(css);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNotNull();
+        assertThat(response.getHeader(HttpHeaders.LAST_MODIFIED)).isNotNull();
+        assertThat(chain.getRequest()).isNull();
+    }
+
+    @Test
+    void answersIfNoneMatchWithNotModified() throws Exception {
+        String etag = perform(request("GET", "/css/site.css")).getHeader(HttpHeaders.ETAG);
+        MockHttpServletRequest request = request("GET", "/css/site.css");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+
+        MockHttpServletResponse response = perform(request);
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void answersIfModifiedSinceWithNotModified() throws Exception {
+        long lastModified = perform(request("GET", "/css/site.css")).getDateHeader(HttpHeaders.LAST_MODIFIED);
+        MockHttpServletRequest request = request("GET", "/css/site.css");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+
+        assertThat(perform(request).getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+
+    @Test
+    void servesTheGzippedVariantToClientsThatAcceptIt() throws Exception {
+        MockHttpServletRequest request = request("GET", "/css/site.css");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+        MockHttpServletResponse response = perform(request);
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.getContentLengthLong()).isLessThan(css.length());
+        assertThat(response.getHeader(HttpHeaders.ETAG))
+            .isNotEqualTo(perform(request("GET", "/css/site.css")).getHeader(HttpHeaders.ETAG));
+        try (var gzip = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertThat(new String(gzip.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(css);
+        }
+    }
+
+    @Test
+    void servesTheIdentityVariantToOtherClients() throws Exception {
+        MockHttpServletResponse response = perform(request("GET", "/css/site.css"));
+
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    void answersHeadRequestsWithoutBody() throws Exception {
+        MockHttpServletResponse response = perform(request("HEAD", "/css/site.css"));
+
+        assertThat(response.getStatus()).isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(response.getContentLengthLong()).isEqualTo(css.length());
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void leavesRangeRequestsToTheResourceHandler() throws Exception {
+        MockHttpServletRequest request = request("GET", "/css/site.css");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+
+        perform(request);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    @Test
+    void leavesOtherPathsAndMethodsToTheRestOfTheChain() throws Exception {
+        MockHttpServletRequest missing = request("GET", "/css/missing.css");
+        perform(missing);
+        assertThat(chain.getRequest()).isSameAs(missing);
+
+        MockHttpServletRequest post = request("POST", "/css/site.css");
+        perform(post);
+        assertThat(chain.getRequest()).isSameAs(post);
+    }
+
+    @Test
+    void marksOnlyFingerprintedResourcesImmutable() throws Exception {
+        assertThat(perform(request("GET", "/lib/vendor.js")).getHeader(HttpHeaders.CACHE_CONTROL))
+            .isEqualTo("public, max-age=31536000, immutable");
+        assertThat(perform(request("GET", "/css/site.css")).getHeader(HttpHeaders.CACHE_CONTROL))
+            .isEqualTo("no-cache");
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        return new MockHttpServletRequest(method, path);
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,56 @@
+package inthemix.httpcache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaticResourceIndexTest {
+
+    private final byte[] sha256 = digest("SHA-256");
+    private final byte[] md5 = digest("MD5");
+    private final List<byte[]> hashes = List.of(sha256, md5);
+
+    @Test
+    void namesWithTheirContentHashAreFingerprinted() {
+        String hex = HexFormat.of().formatHex(sha256);
+        String base64 = Base64.getUrlEncoder().withoutPadding().encodeToString(sha256);
+
+        assertThat(StaticResourceIndex.isFingerprinted("app." + hex.substring(0, 8) + ".js", hashes)).isTrue();
+        assertThat(StaticResourceIndex.isFingerprinted("app." + hex.substring(0, 8).toUpperCase() + ".js", hashes))
+            .isTrue();
+        assertThat(StaticResourceIndex.isFingerprinted("index-" + base64.substring(0, 8) + ".js", hashes)).isTrue();
+        assertThat(StaticResourceIndex.isFingerprinted("app." + hex.substring(0, 10) + ".min.js", hashes)).isTrue();
+        // like Spring's ContentVersionStrategy
+        assertThat(StaticResourceIndex.isFingerprinted("app-" + HexFormat.of().formatHex(md5) + ".js", hashes))
+            .isTrue();
+    }
+
+    @Test
+    void namesThatOnlyLookFingerprintedAreNot() {
+        assertThat(StaticResourceIndex.isFingerprinted("user-preferences-default.css", hashes)).isFalse();
+        assertThat(StaticResourceIndex.isFingerprinted("jquery.dataTables-responsive.js", hashes)).isFalse();
+        assertThat(StaticResourceIndex.isFingerprinted("app.3f2a9c1b.js", hashes)).isFalse();
+        assertThat(StaticResourceIndex.isFingerprinted("app.js", hashes)).isFalse();
+    }
+
+    @Test
+    void hashPrefixesShorterThan8CharactersDontCount() {
+        String hex = HexFormat.of().formatHex(sha256);
+
+        assertThat(StaticResourceIndex.isFingerprinted("app." + hex.substring(0, 7) + ".js", hashes)).isFalse();
+    }
+
+    private static byte[] digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest("content".getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package inthemix.httpcache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class StreamingEtagFilterTest {
+
+    private final StreamingEtagFilter filter = new StreamingEtagFilter(1024);
+
+    @Test
+    void answersAMatchingIfNoneMatchWithNotModified() throws Exception {
+        FilterChain chain = (request, response) -> response.getWriter().write("{\"id\":1}");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/shallow/1"), response, chain);
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(response.getContentLength()).isEqualTo(8);
+
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/shallow/1");
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        filter.doFilter(conditional, notModified, chain);
+
+        assertThat(notModified.getStatus()).isEqualTo(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat(notModified.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void streamsBodiesLargerThanTheBufferWithoutETag() throws Exception {
+        byte[] body = new byte[4096];
+        Arrays.fill(body, (byte) 'x');
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/shallow/1"), response,
+            (req, res) -> {
+                res.getOutputStream().write(body, 0, 1000);
+                res.getOutputStream().write(body, 1000, 3096);
+            });
+
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isNull();
+        assertThat(response.getContentAsByteArray()).isEqualTo(body);
+    }
+
+    @Test
+    void registersWriteListenersWithTheWrappedResponse() throws Exception {
+        ServletOutputStream target = mock(ServletOutputStream.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(target);
+        when(target.isReady()).thenReturn(false);
+        WriteListener listener = mock(WriteListener.class);
+        boolean[] ready = new boolean[1];
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/shallow/1"), response, (req, res) -> {
+            res.getOutputStream().write(1);
+            res.getOutputStream().setWriteListener(listener);
+            ready[0] = res.getOutputStream().isReady();
+        });
+
+        verify(target).write(any(byte[].class), eq(0), eq(1));
+        verify(target).setWriteListener(listener);
+        assertThat(ready[0]).isFalse();
+    }
+
+    @Test
+    void writesAsyncResponsesThroughWithoutETag() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AsyncController())
+            .addFilter(filter, "/*")
+            .build();
+
+        MvcResult result = mockMvc.perform(get("/async"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+            .andExpect(content().string("streamed"));
+    }
+
+    @RestController
+    static class AsyncController {
+
+        @GetMapping("/async")
+        StreamingResponseBody async() {
+            return out -> out.write("streamed".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
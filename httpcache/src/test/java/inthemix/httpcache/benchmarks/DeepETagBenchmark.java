@@ -0,0 +1,122 @@
+package inthemix.httpcache.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import inthemix.httpcache.DeepETag;
+import inthemix.httpcache.DeepETagInterceptor;
+import inthemix.httpcache.InMemoryETagIndex;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares answering a conditional request for an unchanged resource with a {@code 304}: a {@link DeepETag} hit,
+ * which only looks up the ETag in the index, with a {@link ShallowEtagHeaderFilter} hit, which has the model loaded
+ * and rendered to hash it. Loading the model is left out, so the shallow ETag's cost is a lower bound.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=DeepETagBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DeepETagBenchmark {
+
+    public record Item(String id, String name, long price) { }
+
+    public record Model(String id, List<Item> items) { }
+
+    public static class Controller {
+
+        @DeepETag("some/{id}")
+        public Model get(String id) {
+            throw new UnsupportedOperationException("not invoked on a hit");
+        }
+    }
+
+    @Param({ "1", "100" })
+    int items;
+
+    private final InMemoryETagIndex index = new InMemoryETagIndex(1000);
+    private final DeepETagInterceptor interceptor = new DeepETagInterceptor(index);
+    private final ShallowEtagHeaderFilter shallowEtagFilter = new ShallowEtagHeaderFilter();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> uriVariables = Map.of("id", "1");
+    private HandlerMethod handler;
+    private FilterChain rendering;
+    private String deepETag;
+    private String shallowETag;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = new HandlerMethod(new Controller(), Controller.class.getMethod("get", String.class));
+        deepETag = '"' + index.getETag("some/1") + '"';
+        Model model = new Model("1", IntStream.range(0, items)
+            .mapToObj(i -> new Item(String.valueOf(i), "item " + i, i * 100L))
+            .toList());
+        rendering = (request, response) -> {
+            response.setContentType("application/json");
+            objectMapper.writeValue(response.getOutputStream(), model);
+        };
+        var response = new MockHttpServletResponse();
+        shallowEtagFilter.doFilter(new MockHttpServletRequest("GET", "/shallow/1"), response, rendering);
+        shallowETag = response.getHeader(HttpHeaders.ETAG);
+        if (deepETagHit() != 304 || shallowETagHit() != 304) {
+            throw new IllegalStateException("Not measuring hits");
+        }
+    }
+
+    @Benchmark
+    public int deepETagHit() {
+        var request = new MockHttpServletRequest("GET", "/deep/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, deepETag);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, uriVariables);
+        var response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, handler);
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public int shallowETagHit() throws ServletException, IOException {
+        var request = new MockHttpServletRequest("GET", "/shallow/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, shallowETag);
+        var response = new MockHttpServletResponse();
+        shallowEtagFilter.doFilter(request, response, rendering);
+        return response.getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(DeepETagBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
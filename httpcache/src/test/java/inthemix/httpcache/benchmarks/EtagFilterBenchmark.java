@@ -0,0 +1,122 @@
+package inthemix.httpcache.benchmarks;
+
+import inthemix.httpcache.StreamingEtagFilter;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link StreamingEtagFilter} with Spring's {@link ShallowEtagHeaderFilter} for a handler that writes its
+ * body in 8 KB chunks, up to and well beyond the 64 KB that the streaming filter buffers. The response discards what
+ * reaches it, so only the filters' own copying, hashing and allocation are measured.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=EtagFilterBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EtagFilterBenchmark {
+
+    public enum EtagFilter { SHALLOW, STREAMING }
+
+    @Param
+    EtagFilter filter;
+
+    @Param({ "1024", "16384", "262144", "4194304" })
+    int bodySize;
+
+    private Filter etagFilter;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() {
+        etagFilter = filter == EtagFilter.SHALLOW ? new ShallowEtagHeaderFilter() : new StreamingEtagFilter();
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+        chain = (request, response) -> {
+            OutputStream out = response.getOutputStream();
+            for (int offset = 0; offset < body.length; offset += 8192) {
+                out.write(body, offset, Math.min(8192, body.length - offset));
+            }
+        };
+    }
+
+    @Benchmark
+    public long filter() throws ServletException, IOException {
+        var response = new DiscardingResponse();
+        etagFilter.doFilter(new MockHttpServletRequest("GET", "/shallow/1"), response, chain);
+        return response.written;
+    }
+
+    /**
+     * A response whose body only counts the bytes written to it.
+     */
+    private static class DiscardingResponse extends MockHttpServletResponse {
+
+        long written;
+
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+
+            @Override
+            public void write(int b) {
+                written++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                written += len;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(EtagFilterBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,3 @@
+export function vendor() {
+    return 'vendor';
+}
@@ -0,0 +1,226 @@
+package inthemix.loadtest;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stands in for <a href="https://httpbin.org">httpbin</a>, for the routes the demos call: {@code GET /json},
+ * {@code POST /post} and {@code GET /delay/{n}}. Responses look like httpbin's, but are kept simple.
+ * <p>
+ * The demos call {@code http://httpbin/...}, so run them with this stub as their HTTP proxy, which works since
+ * requests through a proxy carry the full URL, and the stub only looks at the path:
+ * <pre>
+ * java -cp loadtest/target/loadtest.jar inthemix.loadtest.HttpBinStub --port=8999 --latency=20ms
+ * java -Dhttp.proxyHost=localhost -Dhttp.proxyPort=8999 -jar metrics/target/metrics-0.0.1-SNAPSHOT.jar
+ * </pre>
+ * Every response is delayed by {@code latency}, and a fraction {@code errorRate} of the requests gets a {@code 503}
+ * instead, to see how a demo behaves when its backend is slow or failing. {@code /delay/{n}} waits {@code n} times
+ * {@code delayUnit}, so it can be scaled down for load tests. Requests are handled on virtual threads, so latency
+ * doesn't limit throughput.
+ */
+public class HttpBinStub implements AutoCloseable {
+
+    public record Settings(int port, Duration latency, double errorRate, Duration delayUnit) {
+
+        public static final Settings DEFAULTS = new Settings(8999, Duration.ZERO, 0, Duration.ofSeconds(1));
+
+        /**
+         * @param args like {@code --port=8999 --latency=20ms --error-rate=0.01 --delay-unit=100ms}
+         */
+        public static Settings parse(String[] args) {
+            Map<String, String> options = Options.parse(args);
+            return new Settings(
+                    Options.intValue(options, "port", DEFAULTS.port()),
+                    Options.duration(options, "latency", DEFAULTS.latency()),
+                    Options.doubleValue(options, "error-rate", DEFAULTS.errorRate()),
+                    Options.duration(options, "delay-unit", DEFAULTS.delayUnit()));
+        }
+    }
+
+    /** The sample document httpbin serves at {@code /json} */
+    private static final byte[] JSON = """
+            {
+              "slideshow": {
+                "author": "Yours Truly",
+                "date": "date of publication",
+                "slides": [
+                  {
+                    "title": "Wake up to WonderWidgets!",
+                    "type": "all"
+                  },
+                  {
+                    "items": [
+                      "Why <em>WonderWidgets</em> are great",
+                      "Who <em>buys</em> WonderWidgets"
+                    ],
+                    "title": "Overview",
+                    "type": "all"
+                  }
+                ],
+                "title": "Sample Slide Show"
+              }
+            }
+            """.getBytes(StandardCharsets.UTF_8);
+
+    /** httpbin's upper limit for {@code /delay/{n}} */
+    private static final int MAX_DELAY = 10;
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public HttpBinStub(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress(settings.port()), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        HttpBinStub stub = new HttpBinStub(Settings.parse(args));
+        stub.start();
+        System.out.printf("httpbin stub listening on port %d, %s%n", stub.port(), stub.settings);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port listened on, which differs from the configured one if that was 0
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] requestBody;
+            try (InputStream in = exchange.getRequestBody()) {
+                requestBody = in.readAllBytes();
+            }
+            sleep(settings.latency());
+            if (settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                send(exchange, 503, "{\"error\": \"injected\"}\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/json") && method.equals("GET")) {
+                send(exchange, 200, JSON);
+            } else if (path.equals("/post") && method.equals("POST")) {
+                send(exchange, 200, echo(exchange, requestBody));
+            } else if (path.startsWith("/delay/") && method.equals("GET")) {
+                int seconds;
+                try {
+                    seconds = Math.min(Integer.parseInt(path.substring("/delay/".length())), MAX_DELAY);
+                } catch (NumberFormatException e) {
+                    send(exchange, 404, new byte[0]);
+                    return;
+                }
+                sleep(settings.delayUnit().multipliedBy(seconds));
+                send(exchange, 200, echo(exchange, requestBody));
+            } else if (path.equals("/json") || path.equals("/post") || path.startsWith("/delay/")) {
+                send(exchange, 405, new byte[0]);
+            } else {
+                send(exchange, 404, new byte[0]);
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Like httpbin's response with the request's query parameters, body and headers, but with the query string as
+     * a single value per parameter and the body only as text.
+     */
+    private static byte[] echo(HttpExchange exchange, byte[] requestBody) {
+        URI uri = exchange.getRequestURI();
+        StringBuilder json = new StringBuilder("{\n  \"args\": {");
+        String query = uri.getRawQuery();
+        if (query != null) {
+            String separator = "";
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                String name = equals == -1 ? parameter : parameter.substring(0, equals);
+                String value = equals == -1 ? "" : parameter.substring(equals + 1);
+                json.append(separator).append(quote(name)).append(": ").append(quote(value));
+                separator = ", ";
+            }
+        }
+        json.append("},\n  \"data\": ").append(quote(new String(requestBody, StandardCharsets.UTF_8)));
+        json.append(",\n  \"headers\": {");
+        Headers headers = exchange.getRequestHeaders();
+        String separator = "";
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            json.append(separator).append(quote(header.getKey())).append(": ")
+                    .append(quote(String.join(",", header.getValue())));
+            separator = ", ";
+        }
+        String host = headers.getFirst("Host");
+        json.append("},\n  \"url\": ").append(quote("http://" + (host != null ? host : "httpbin") + uri.getPath()))
+                .append("\n}\n");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package inthemix.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies in microseconds, in log-linear buckets like HdrHistogram's: values below 512µs are kept exactly, larger
+ * ones with a relative error below 0.4%, in a fixed 70KB of counts however many values are recorded.
+ * Recording is thread-safe and lock-free.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 9;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+    /** Enough for latencies up to 2^40µs, about 12 days */
+    private static final int BUCKETS = (40 - SUB_BUCKET_BITS + 3) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(Math.min(index(micros), BUCKETS - 1));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalMicros.sum() / 1000.0 / n;
+    }
+
+    double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * @param percentile like 99.9
+     * @return the latency in milliseconds that the given percentage of the recorded values doesn't exceed
+     */
+    double percentileMillis(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    static int index(long micros) {
+        if (micros < 2 * HALF_SUB_BUCKETS) {
+            return (int) micros;
+        }
+        // the shift that leaves the value with SUB_BUCKET_BITS significant bits
+        int shift = 64 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (micros >>> shift);
+    }
+
+    /**
+     * @return the highest value that ends up in the bucket with the given index
+     */
+    static long highestValue(int index) {
+        if (index < 2 * HALF_SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long lowest = (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
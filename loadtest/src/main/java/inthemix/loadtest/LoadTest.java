@@ -0,0 +1,161 @@
+package inthemix.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a demo at fixed arrival rates and reports its throughput and latency percentiles, one line per rate:
+ * <pre>
+ * java -cp loadtest/target/loadtest.jar inthemix.loadtest.LoadTest --scenario=order --rates=100,200,400 --duration=30s
+ * </pre>
+ * This is an open model: requests are started on schedule whether or not earlier ones have completed, like users
+ * who don't wait for each other. Latency is measured from when a request was due rather than from when it was sent,
+ * so a stalled server shows up in the percentiles instead of just lowering the rate (coordinated omission).
+ * When {@code max-in-flight} requests are outstanding, the server can't keep up with the rate, and further requests
+ * are counted as dropped instead of piling up in the client.
+ * <p>
+ * Options: {@code scenario} (see {@link Scenario}) or {@code path} and {@code method} for any other request,
+ * {@code base-url} (default {@code http://localhost:8080}), {@code rates} per second, {@code duration} and
+ * {@code warmup} per rate, {@code max-in-flight} and the request {@code timeout}.
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private record Settings(Scenario scenario, String method, URI uri, int[] rates, Duration duration,
+                            Duration warmup, int maxInFlight, Duration timeout) { }
+
+    private static class Results {
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    private final Settings settings;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+
+    private LoadTest(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.timeout())
+                .executor(executor)
+                .build();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = Options.parse(args);
+        String scenarioName = options.getOrDefault("scenario", "order").toUpperCase(Locale.ROOT).replace('-', '_');
+        Scenario scenario = options.containsKey("path") ? null : Scenario.valueOf(scenarioName);
+        String method = scenario != null ? scenario.method : options.getOrDefault("method", "GET");
+        String path = scenario != null ? scenario.path : options.get("path");
+        Settings settings = new Settings(scenario, method,
+                URI.create(options.getOrDefault("base-url", "http://localhost:8080") + path),
+                Arrays.stream(options.getOrDefault("rates", "100").split(",")).mapToInt(Integer::parseInt).toArray(),
+                Options.duration(options, "duration", Duration.ofSeconds(30)),
+                Options.duration(options, "warmup", Duration.ofSeconds(5)),
+                Options.intValue(options, "max-in-flight", 1000),
+                Options.duration(options, "timeout", Duration.ofSeconds(10)));
+
+        LoadTest loadTest = new LoadTest(settings);
+        System.out.printf("%s %s, %s per rate after %s warmup%n",
+                method, settings.uri(), settings.duration(), settings.warmup());
+        System.out.printf("%8s %10s %8s %8s %8s %8s %8s %10s %8s %8s %8s %8s %8s %8s%n", "rate/s", "measured",
+                "2xx/3xx", "4xx", "5xx", "failed", "dropped", "done/s", "mean ms", "p50", "p90", "p99", "p99.9", "max");
+        for (int rate : settings.rates()) {
+            Results results = loadTest.run(rate);
+            loadTest.report(rate, results);
+        }
+        loadTest.executor.close();
+    }
+
+    private Results run(int rate) throws InterruptedException {
+        Results results = new Results();
+        Semaphore inFlight = new Semaphore(settings.maxInFlight());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean measured = due >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    results.dropped.increment();
+                }
+                continue;
+            }
+            client.sendAsync(request(i), HttpResponse.BodyHandlers.discarding()).whenComplete((response, e) -> {
+                inFlight.release();
+                if (!measured) {
+                    return;
+                }
+                results.latencies.record(System.nanoTime() - due);
+                if (e != null) {
+                    results.failures.increment();
+                } else if (response.statusCode() >= 500) {
+                    results.serverErrors.increment();
+                } else if (response.statusCode() >= 400) {
+                    results.clientErrors.increment();
+                } else {
+                    results.ok.increment();
+                }
+            });
+        }
+        // outstanding requests complete or time out within the timeout
+        long drainMillis = settings.timeout().toMillis() + 1000;
+        if (!inFlight.tryAcquire(settings.maxInFlight(), drainMillis, TimeUnit.MILLISECONDS)) {
+            System.out.println("Not all requests completed in time");
+        }
+        return results;
+    }
+
+    private HttpRequest request(long i) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(settings.uri()).timeout(settings.timeout());
+        Scenario scenario = settings.scenario();
+        if (scenario != null && scenario.body != null) {
+            request.header("Content-Type", scenario.contentType)
+                    .method(settings.method(), HttpRequest.BodyPublishers.ofString(scenario.body.apply(i)));
+        } else {
+            request.method(settings.method(), HttpRequest.BodyPublishers.noBody());
+        }
+        return request.build();
+    }
+
+    private void report(int rate, Results results) {
+        LatencyHistogram latencies = results.latencies;
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%8d %10d %8d %8d %8d %8d %8d %10.1f %8.2f",
+                rate, latencies.count() + results.dropped.sum(), results.ok.sum(), results.clientErrors.sum(),
+                results.serverErrors.sum(), results.failures.sum(), results.dropped.sum(),
+                latencies.count() / (settings.duration().toMillis() / 1000.0), latencies.meanMillis()));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " %8.2f", latencies.percentileMillis(percentile)));
+        }
+        line.append(String.format(Locale.ROOT, " %8.2f", latencies.maxMillis()));
+        System.out.println(line);
+    }
+}
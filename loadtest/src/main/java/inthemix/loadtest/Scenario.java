@@ -0,0 +1,51 @@
+package inthemix.loadtest;
+
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * The requests to load test the demos with, each against its default port 8080. Request bodies vary with the
+ * sequence number of the request, so caches and batching see realistic input.
+ */
+enum Scenario {
+
+    /** autoconfig: calls httpbin's {@code /json} with request/response logging */
+    JSON("GET", "/", null, null),
+
+    /** metrics: a single order, dispatched to httpbin's {@code /post} in batches */
+    ORDER("POST", "/order", "application/json", Scenario::order),
+
+    /** metrics: 100 orders per request, streamed as NDJSON */
+    BULK_ORDERS("POST", "/orders", "application/x-ndjson", i -> LongStream.range(i * 100, i * 100 + 100)
+            .mapToObj(Scenario::order)
+            .collect(Collectors.joining("\n"))),
+
+    /** errorhandling: calls httpbin's {@code /delay/2} with a 1 second timeout */
+    TIMEOUT("GET", "/timeout", null, null),
+
+    /**
+     * httpcache: a response with a deep ETag, without conditional requests. After the first request it's served from
+     * the response cache, so this measures cache hits rather than rendering
+     */
+    DEEP_ETAG("GET", "/deep/1", null, null);
+
+    private static final String[] CATEGORIES = { "INSTRUMENT", "SPEAKER", "LIGHTING" };
+
+    final String method;
+    final String path;
+    final String contentType;
+    final LongFunction<String> body;
+
+    Scenario(String method, String path, String contentType, LongFunction<String> body) {
+        this.method = method;
+        this.path = path;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    private static String order(long i) {
+        return "{\"ean\": \"%013d\", \"category\": \"%s\", \"quantity\": %d, \"price\": %d.99}"
+                .formatted(8_700_000_000_000L + i, CATEGORIES[(int) (i % CATEGORIES.length)], 1 + i % 3, 10 + i % 90);
+    }
+}
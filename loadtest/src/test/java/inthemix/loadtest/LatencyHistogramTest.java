@@ -0,0 +1,61 @@
+package inthemix.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void valuesBelow512AreKeptExactly() {
+        for (long micros = 0; micros < 512; micros++) {
+            assertThat(LatencyHistogram.index(micros)).isEqualTo(micros);
+            assertThat(LatencyHistogram.highestValue((int) micros)).isEqualTo(micros);
+        }
+    }
+
+    @Test
+    void bucketsFollowEachOtherWithoutGaps() {
+        int last = LatencyHistogram.index(1L << 40) - 1;
+        for (int i = 0; i < last; i++) {
+            long highest = LatencyHistogram.highestValue(i);
+            assertThat(LatencyHistogram.index(highest)).as("highest value of bucket %d", i).isEqualTo(i);
+            assertThat(LatencyHistogram.index(highest + 1)).as("next value after bucket %d", i).isEqualTo(i + 1);
+        }
+    }
+
+    @Test
+    void largerValuesHaveARelativeErrorBelow0Point4Percent() {
+        for (long micros : new long[] { 512, 513, 1000, 1023, 1024, 65_537, 1_234_567, 999_999_999, (1L << 40) - 1 }) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(micros));
+            assertThat(highest).isGreaterThanOrEqualTo(micros);
+            assertThat((double) (highest - micros) / micros).as("error for %d", micros).isLessThan(0.004);
+        }
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketResolution() {
+        var histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat(histogram.meanMillis()).isEqualTo(500.5);
+        assertThat(histogram.percentileMillis(50)).isCloseTo(500, within(2.0));
+        assertThat(histogram.percentileMillis(99)).isCloseTo(990, within(4.0));
+        assertThat(histogram.percentileMillis(100)).isEqualTo(1000);
+        assertThat(histogram.maxMillis()).isEqualTo(1000);
+    }
+
+    @Test
+    void anEmptyHistogramReportsZeros() {
+        var histogram = new LatencyHistogram();
+
+        assertThat(histogram.meanMillis()).isZero();
+        assertThat(histogram.percentileMillis(99.9)).isZero();
+    }
+}
@@ -0,0 +1,52 @@
+package inthemix.masking;
+
+import org.springframework.boot.actuate.context.properties.ConfigurationPropertiesReportEndpoint;
+import org.springframework.boot.actuate.context.properties.ConfigurationPropertiesReportEndpointWebExtension;
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.endpoint.Show;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.EndpointWebExtension;
+
+import java.util.Set;
+
+/**
+ * Serves {@code /actuator/configprops} from a {@link SanitizedSnapshotCache}.
+ * Operation annotations aren't inherited, so the overridden methods repeat them.
+ */
+@EndpointWebExtension(endpoint = ConfigurationPropertiesReportEndpoint.class)
+public class CachingConfigurationPropertiesReportEndpointWebExtension
+    extends ConfigurationPropertiesReportEndpointWebExtension {
+
+    private record Key(String prefix, boolean showUnsanitized) { }
+
+    private final Show showValues;
+    private final Set<String> roles;
+    private final SanitizedSnapshotCache cache;
+
+    public CachingConfigurationPropertiesReportEndpointWebExtension(ConfigurationPropertiesReportEndpoint delegate,
+                                                                    Show showValues, Set<String> roles,
+                                                                    SanitizedSnapshotCache cache) {
+        super(delegate, showValues, roles);
+        this.showValues = showValues;
+        this.roles = roles;
+        this.cache = cache;
+    }
+
+    @Override
+    @ReadOperation
+    public ConfigurationPropertiesReportEndpoint.ConfigurationPropertiesDescriptor configurationProperties(
+        SecurityContext securityContext) {
+        return cache.get(new Key(null, showValues.isShown(securityContext, roles)),
+            () -> super.configurationProperties(securityContext));
+    }
+
+    @Override
+    @ReadOperation
+    public WebEndpointResponse<ConfigurationPropertiesReportEndpoint.ConfigurationPropertiesDescriptor>
+        configurationPropertiesWithPrefix(SecurityContext securityContext, @Selector String prefix) {
+        return cache.get(new Key(prefix, showValues.isShown(securityContext, roles)),
+            () -> super.configurationPropertiesWithPrefix(securityContext, prefix));
+    }
+}
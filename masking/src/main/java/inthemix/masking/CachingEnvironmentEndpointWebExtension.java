@@ -0,0 +1,51 @@
+package inthemix.masking;
+
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.Show;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.EndpointWebExtension;
+import org.springframework.boot.actuate.env.EnvironmentEndpoint;
+import org.springframework.boot.actuate.env.EnvironmentEndpointWebExtension;
+import org.springframework.lang.Nullable;
+
+import java.util.Set;
+
+/**
+ * Serves {@code /actuator/env} from a {@link SanitizedSnapshotCache}.
+ * Operation annotations aren't inherited, so the overridden methods repeat them.
+ */
+@EndpointWebExtension(endpoint = EnvironmentEndpoint.class)
+public class CachingEnvironmentEndpointWebExtension extends EnvironmentEndpointWebExtension {
+
+    private record Key(String operation, String argument, boolean showUnsanitized) { }
+
+    private final Show showValues;
+    private final Set<String> roles;
+    private final SanitizedSnapshotCache cache;
+
+    public CachingEnvironmentEndpointWebExtension(EnvironmentEndpoint delegate, Show showValues, Set<String> roles,
+                                                  SanitizedSnapshotCache cache) {
+        super(delegate, showValues, roles);
+        this.showValues = showValues;
+        this.roles = roles;
+        this.cache = cache;
+    }
+
+    @Override
+    @ReadOperation
+    public EnvironmentEndpoint.EnvironmentDescriptor environment(SecurityContext securityContext,
+                                                                 @Nullable String pattern) {
+        return cache.get(new Key("environment", pattern, showValues.isShown(securityContext, roles)),
+            () -> super.environment(securityContext, pattern));
+    }
+
+    @Override
+    @ReadOperation
+    public WebEndpointResponse<EnvironmentEndpoint.EnvironmentEntryDescriptor> environmentEntry(
+        SecurityContext securityContext, @Selector String toMatch) {
+        return cache.get(new Key("environmentEntry", toMatch, showValues.isShown(securityContext, roles)),
+            () -> super.environmentEntry(securityContext, toMatch));
+    }
+}
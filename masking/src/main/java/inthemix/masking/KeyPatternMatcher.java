@@ -0,0 +1,99 @@
+package inthemix.masking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Matches keys against a list of patterns with a single regex evaluation instead of one per pattern, by combining
+ * them into one alternation. Results are memoized per key, since the actuator endpoints sanitize the same property
+ * names over and over again.
+ * <p>
+ * Patterns using back references can't be combined, as their group numbers would shift, nor can patterns with named
+ * groups, as two patterns using the same name wouldn't compile together, nor patterns in comments mode: those are
+ * matched separately.
+ */
+class KeyPatternMatcher {
+
+    private static final Pattern UNCOMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z]*x");
+
+    private final List<Pattern> patterns;
+    private final Pattern combined;
+    private final List<Pattern> separate = new ArrayList<>();
+    private final Map<String, Boolean> memo = new ConcurrentHashMap<>();
+    private final int maxMemoSize;
+
+    KeyPatternMatcher(List<Pattern> patterns, int maxMemoSize) {
+        this.patterns = patterns;
+        this.maxMemoSize = maxMemoSize;
+        var alternation = new StringBuilder();
+        for (Pattern pattern : patterns) {
+            String inlineFlags = inlineFlags(pattern.flags());
+            if (inlineFlags == null || UNCOMBINABLE.matcher(pattern.pattern()).find()) {
+                separate.add(pattern);
+                continue;
+            }
+            if (!alternation.isEmpty()) {
+                alternation.append('|');
+            }
+            alternation.append("(?").append(inlineFlags).append(':').append(pattern.pattern()).append(')');
+        }
+        this.combined = alternation.isEmpty() ? null : Pattern.compile(alternation.toString());
+    }
+
+    /**
+     * @return the patterns this matcher was created for, to check whether they have been changed since
+     */
+    List<Pattern> patterns() {
+        return patterns;
+    }
+
+    boolean matches(String key) {
+        Boolean matches = memo.get(key);
+        if (matches == null) {
+            matches = evaluate(key);
+            if (memo.size() >= maxMemoSize) {
+                // simpler than LRU, and only happens when keys are generated rather than a fixed set of properties
+                memo.clear();
+            }
+            memo.put(key, matches);
+        }
+        return matches;
+    }
+
+    private boolean evaluate(String key) {
+        if (combined != null && combined.matcher(key).matches()) {
+            return true;
+        }
+        for (Pattern pattern : separate) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the flags as used in an embedded flag expression, or {@code null} if some can't be expressed that way.
+     * Comments mode is left out on purpose: a trailing comment would swallow the closing parenthesis of the group.
+     */
+    private static String inlineFlags(int flags) {
+        var inline = new StringBuilder();
+        flags = appendFlag(inline, flags, Pattern.CASE_INSENSITIVE, 'i');
+        flags = appendFlag(inline, flags, Pattern.MULTILINE, 'm');
+        flags = appendFlag(inline, flags, Pattern.DOTALL, 's');
+        flags = appendFlag(inline, flags, Pattern.UNICODE_CASE, 'u');
+        flags = appendFlag(inline, flags, Pattern.UNIX_LINES, 'd');
+        flags = appendFlag(inline, flags, Pattern.UNICODE_CHARACTER_CLASS, 'U');
+        return flags == 0 ? inline.toString() : null;
+    }
+
+    private static int appendFlag(StringBuilder inline, int flags, int flag, char character) {
+        if ((flags & flag) != 0) {
+            inline.append(character);
+        }
+        return flags & ~flag;
+    }
+}
@@ -1,8 +1,10 @@
 package inthemix.masking;
 
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
@@ -12,4 +14,10 @@ public class MaskingApplication {
 		SpringApplication.run(MaskingApplication.class, args);
 	}
 
+	@Bean
+	SmartInitializingSingleton logMessageMasking(SanitizingProperties sanitizing) {
+		// the same patterns that sanitize the actuator endpoints mask secrets in log messages
+		return () -> MaskingMessageConverter.setKeyPatternsToMask(sanitizing.getKeyPatternsToMask());
+	}
+
 }
@@ -0,0 +1,32 @@
+package inthemix.masking;
+
+import ch.qos.logback.classic.pattern.MessageConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Logback converter for the message, that masks the values of sensitive keys using a {@link SecretMasker}.
+ * Registered for {@code %m}, {@code %msg} and {@code %message} in {@code logback-spring.xml}.
+ * <p>
+ * Logback is initialized before the application context, so the masker starts out with the default
+ * {@link SanitizingProperties} patterns and is replaced once the configured ones are bound, when the singletons of
+ * the context have been created. Until then, which includes everything logged while the context is refreshed, only
+ * the default patterns are masked. The masker is static since Logback creates the converters itself: it's shared by
+ * all converters, and by all contexts in the same class loader, with the last one to start winning.
+ */
+public class MaskingMessageConverter extends MessageConverter {
+
+    /** The fallback until {@link #setKeyPatternsToMask} is called */
+    private static volatile SecretMasker masker = new SecretMasker(new SanitizingProperties().getKeyPatternsToMask());
+
+    public static void setKeyPatternsToMask(List<Pattern> keyPatternsToMask) {
+        masker = new SecretMasker(keyPatternsToMask);
+    }
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return masker.mask(super.convert(event));
+    }
+}
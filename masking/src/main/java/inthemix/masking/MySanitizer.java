@@ -4,12 +4,13 @@ import org.springframework.boot.actuate.endpoint.SanitizableData;
 import org.springframework.boot.actuate.endpoint.SanitizingFunction;
 import org.springframework.stereotype.Component;
 
-import java.util.regex.Pattern;
-
 //@Component
 public class MySanitizer implements SanitizingFunction {
 
+    private static final int MAX_MEMOIZED_KEYS = 10_000;
+
     private SanitizingProperties sanitizing;
+    private volatile KeyPatternMatcher matcher;
 
     public MySanitizer(SanitizingProperties sanitizing) {
         this.sanitizing = sanitizing;
@@ -17,12 +18,20 @@ public class MySanitizer implements SanitizingFunction {
 
     @Override
     public SanitizableData apply(SanitizableData data) {
-        for (Pattern pattern : sanitizing.getKeyPatternsToMask()) {
-            if (pattern.matcher(data.getKey()).matches()) {
-                return data.withSanitizedValue();
-                // could also do custom masking, e.g. to show a few characters for identification purpose
-            }
+        if (keyPatternMatcher().matches(data.getKey())) {
+            return data.withSanitizedValue();
+            // could also do custom masking, e.g. to show a few characters for identification purpose
         }
         return data;
     }
+
+    private KeyPatternMatcher keyPatternMatcher() {
+        KeyPatternMatcher current = matcher;
+        // rebuilt when the properties are rebound with other patterns, which also drops the memoized results
+        if (current == null || current.patterns() != sanitizing.getKeyPatternsToMask()) {
+            current = new KeyPatternMatcher(sanitizing.getKeyPatternsToMask(), MAX_MEMOIZED_KEYS);
+            matcher = current;
+        }
+        return current;
+    }
 }
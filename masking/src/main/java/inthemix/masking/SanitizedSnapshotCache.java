@@ -0,0 +1,158 @@
+package inthemix.masking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caches the sanitized responses of an actuator endpoint, so that frequent scrapes don't walk all property sources
+ * and run all {@code SanitizingFunction}s every time while the configuration hasn't changed.
+ * <p>
+ * A snapshot is rebuilt when the {@code version} supplier returns a different value than when it was built, after a
+ * Spring Cloud environment change or refresh event, or once it's older than the refresh interval: changes that can't
+ * be detected, like a property source that's modified in place, are picked up after that interval at the latest.
+ * <p>
+ * Keys include arguments from the request, like a property name pattern. Each snapshot is rebuilt under its own lock,
+ * so requests with new arguments don't hold up those for others, and when the cache is full only the oldest snapshot
+ * is evicted.
+ */
+public class SanitizedSnapshotCache implements ApplicationListener<ApplicationEvent> {
+
+    /** Events that signal a configuration change, by name to not depend on Spring Cloud */
+    private static final Set<String> CHANGE_EVENTS = Set.of(
+        "org.springframework.cloud.context.environment.EnvironmentChangeEvent",
+        "org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent");
+
+    /** Cached operation arguments come from the request, so don't let them grow the cache indefinitely */
+    private static final int MAX_SNAPSHOTS = 64;
+
+    private record Snapshot(Object value, long version, long builtNanos) { }
+
+    /** The lock for rebuilding the snapshot of a key, and the snapshot once it's built */
+    private static final class Entry {
+        private volatile Snapshot snapshot;
+    }
+
+    private final long refreshIntervalNanos;
+    private final LongSupplier version;
+    private final LongSupplier nanoClock;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final Timer rebuildTimer;
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * @param endpoint the id of the endpoint, used as metrics tag
+     * @param version cheaply computed value that changes when the data to sanitize changes
+     */
+    public SanitizedSnapshotCache(String endpoint, Duration refreshInterval, LongSupplier version,
+                                  MeterRegistry meterRegistry) {
+        this(endpoint, refreshInterval, version, meterRegistry, System::nanoTime);
+    }
+
+    SanitizedSnapshotCache(String endpoint, Duration refreshInterval, LongSupplier version, MeterRegistry meterRegistry,
+                           LongSupplier nanoClock) {
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.version = version;
+        this.nanoClock = nanoClock;
+        this.rebuildTimer = Timer.builder("actuator.snapshot.rebuild")
+            .description("Time taken to rebuild a sanitized endpoint snapshot")
+            .tag("endpoint", endpoint)
+            .register(meterRegistry);
+        this.hits = requestCounter(endpoint, "hit", meterRegistry);
+        this.misses = requestCounter(endpoint, "miss", meterRegistry);
+    }
+
+    private static Counter requestCounter(String endpoint, String result, MeterRegistry meterRegistry) {
+        return Counter.builder("actuator.snapshot.requests")
+            .description("Endpoint requests served from a sanitized snapshot (hit) or requiring a rebuild (miss)")
+            .tags("endpoint", endpoint, "result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param key the operation and its arguments, including whether values are shown unsanitized
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Supplier<T> builder) {
+        long currentVersion = currentVersion();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            Snapshot snapshot = entry.snapshot;
+            if (isValid(snapshot, currentVersion)) {
+                hits.increment();
+                return (T) snapshot.value();
+            }
+        } else {
+            if (entries.size() >= MAX_SNAPSHOTS) {
+                evictOldest();
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+        // keeps concurrent scrapes from rebuilding the same snapshot
+        synchronized (entry) {
+            Snapshot snapshot = entry.snapshot;
+            if (isValid(snapshot, currentVersion)) {
+                hits.increment();
+                return (T) snapshot.value();
+            }
+            misses.increment();
+            long start = nanoClock.getAsLong();
+            T value = builder.get();
+            long builtNanos = nanoClock.getAsLong();
+            rebuildTimer.record(builtNanos - start, TimeUnit.NANOSECONDS);
+            entry.snapshot = new Snapshot(value, currentVersion, builtNanos);
+            return value;
+        }
+    }
+
+    /**
+     * Evicts the snapshot that was built the longest ago; those still being built are left alone.
+     */
+    private void evictOldest() {
+        Object oldestKey = null;
+        long oldestBuiltNanos = 0;
+        for (Map.Entry<Object, Entry> entry : entries.entrySet()) {
+            Snapshot snapshot = entry.getValue().snapshot;
+            if (snapshot != null && (oldestKey == null || snapshot.builtNanos() - oldestBuiltNanos < 0)) {
+                oldestKey = entry.getKey();
+                oldestBuiltNanos = snapshot.builtNanos();
+            }
+        }
+        if (oldestKey != null) {
+            entries.remove(oldestKey);
+        }
+    }
+
+    public void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (CHANGE_EVENTS.contains(event.getClass().getName())) {
+            invalidate();
+        }
+    }
+
+    private long currentVersion() {
+        return 31 * version.getAsLong() + invalidations.get();
+    }
+
+    private boolean isValid(Snapshot snapshot, long currentVersion) {
+        return snapshot != null && snapshot.version() == currentVersion
+            && nanoClock.getAsLong() - snapshot.builtNanos() < refreshIntervalNanos;
+    }
+}
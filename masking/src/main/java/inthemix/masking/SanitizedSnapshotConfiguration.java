@@ -0,0 +1,72 @@
+package inthemix.masking;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.context.properties.ConfigurationPropertiesReportEndpointProperties;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.autoconfigure.env.EnvironmentEndpointProperties;
+import org.springframework.boot.actuate.context.properties.ConfigurationPropertiesReportEndpoint;
+import org.springframework.boot.actuate.env.EnvironmentEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Replaces the web extensions of the env and configprops endpoints by ones that serve cached, sanitized snapshots.
+ * Boot's own extensions back off, as they're only created when missing.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "sanitizing.snapshot.enabled", matchIfMissing = true)
+public class SanitizedSnapshotConfiguration {
+
+    @Bean
+    @ConditionalOnAvailableEndpoint(endpoint = EnvironmentEndpoint.class)
+    SanitizedSnapshotCache environmentSnapshotCache(SanitizingProperties sanitizing, ConfigurableEnvironment environment,
+                                                    MeterRegistry meterRegistry) {
+        return new SanitizedSnapshotCache("env", sanitizing.getSnapshot().getRefreshInterval(),
+            propertySourcesVersion(environment), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint(endpoint = EnvironmentEndpoint.class)
+    CachingEnvironmentEndpointWebExtension environmentEndpointWebExtension(
+        EnvironmentEndpoint environmentEndpoint, EnvironmentEndpointProperties properties,
+        SanitizedSnapshotCache environmentSnapshotCache) {
+        return new CachingEnvironmentEndpointWebExtension(environmentEndpoint, properties.getShowValues(),
+            properties.getRoles(), environmentSnapshotCache);
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint(endpoint = ConfigurationPropertiesReportEndpoint.class)
+    SanitizedSnapshotCache configPropsSnapshotCache(SanitizingProperties sanitizing, ConfigurableEnvironment environment,
+                                                    MeterRegistry meterRegistry) {
+        // configuration properties are bound from the environment, so the same changes apply
+        return new SanitizedSnapshotCache("configprops", sanitizing.getSnapshot().getRefreshInterval(),
+            propertySourcesVersion(environment), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnAvailableEndpoint(endpoint = ConfigurationPropertiesReportEndpoint.class)
+    CachingConfigurationPropertiesReportEndpointWebExtension configurationPropertiesReportEndpointWebExtension(
+        ConfigurationPropertiesReportEndpoint configurationPropertiesReportEndpoint,
+        ConfigurationPropertiesReportEndpointProperties properties, SanitizedSnapshotCache configPropsSnapshotCache) {
+        return new CachingConfigurationPropertiesReportEndpointWebExtension(configurationPropertiesReportEndpoint,
+            properties.getShowValues(), properties.getRoles(), configPropsSnapshotCache);
+    }
+
+    /**
+     * Detects property sources being added, removed or replaced; not changes within a property source.
+     */
+    private static LongSupplier propertySourcesVersion(ConfigurableEnvironment environment) {
+        return () -> {
+            long version = 1;
+            for (PropertySource<?> propertySource : environment.getPropertySources()) {
+                version = 31 * version + System.identityHashCode(propertySource);
+            }
+            return version;
+        };
+    }
+}
@@ -3,6 +3,7 @@ package inthemix.masking;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -16,6 +17,8 @@ public class SanitizingProperties {
         ".+token\\b.*"
     ).map(Pattern::compile).toList();
 
+    private final Snapshot snapshot = new Snapshot();
+
     public List<Pattern> getKeyPatternsToMask() {
         return keyPatternsToMask;
     }
@@ -23,4 +26,32 @@ public class SanitizingProperties {
     public void setKeyPatternsToMask(List<Pattern> keyPatternsToMask) {
         this.keyPatternsToMask = keyPatternsToMask;
     }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public static class Snapshot {
+        /** Whether to serve the env and configprops endpoints from cached, sanitized snapshots */
+        private boolean enabled = true;
+
+        /** Maximum age of a snapshot, after which it's rebuilt even if no change was detected */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
 }
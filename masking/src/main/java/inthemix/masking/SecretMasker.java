@@ -0,0 +1,233 @@
+package inthemix.masking;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Masks the values in {@code key=value} or {@code key: value} text whose key matches any of the sanitizing key
+ * patterns, like {@code my.password=Welkom123}.
+ * <p>
+ * Running every pattern over every message would be far too slow for logging, so the patterns are reduced to the
+ * literal they revolve around ({@code .+password\b.*} to {@code password}) and messages are scanned once with an
+ * Aho-Corasick automaton over those literals. Only when a literal turns up inside a key that's followed by a separator
+ * is the key matched against the original pattern. Patterns that can't be reduced to a literal make every separator
+ * a candidate instead.
+ * <p>
+ * Messages without candidates are returned as they are, without allocating anything.
+ * Instances are thread-safe.
+ * <p>
+ * JSON isn't masked: its keys are quoted, and a closing quote between key and separator doesn't count as one, so
+ * {@code {"db.password":"p"}} is returned as it is.
+ */
+public class SecretMasker {
+
+    public static final String MASK = "******";
+
+    /**
+     * Like {@code .+key\b.*}: optional inline flags, an optional wildcard, a literal, an optional word boundary and an
+     * optional wildcard. Flags don't matter for the literal, since the scan is case-insensitive anyway.
+     */
+    private static final Pattern LITERAL_PATTERN =
+        Pattern.compile("(?:\\(\\?[a-zA-Z]+\\))?(?:\\.[+*])?((?:[A-Za-z0-9_-]|\\\\\\.)+)(?:\\\\b)?(?:\\.[+*])?");
+
+    private static final String SEPARATORS = "=:";
+
+    /** Lower-cased ASCII characters get their own column in the transition table, all others share column 0 */
+    private static final int ALPHABET_SIZE = 128;
+
+    private final List<Pattern> patterns;
+    private final ThreadLocal<Matcher[]> matchers;
+    /** Transitions of the automaton, with the failure transitions already resolved: state * alphabet + char */
+    private final int[] transitions;
+    /** Per state, the length of the literal recognized when reaching it, or 0 */
+    private final int[] matchLengths;
+
+    public SecretMasker(List<Pattern> patterns) {
+        this.patterns = List.copyOf(patterns);
+        this.matchers = ThreadLocal.withInitial(
+            () -> this.patterns.stream().map(pattern -> pattern.matcher("")).toArray(Matcher[]::new));
+        Set<String> literals = new LinkedHashSet<>();
+        for (Pattern pattern : patterns) {
+            Matcher literal = LITERAL_PATTERN.matcher(pattern.pattern());
+            if (literal.matches()) {
+                literals.add(literal.group(1).replace("\\.", ".").toLowerCase());
+            } else {
+                for (char separator : SEPARATORS.toCharArray()) {
+                    literals.add(String.valueOf(separator));
+                }
+            }
+        }
+
+        // trie as the goto function, followed by a breadth-first pass to fold in the failure transitions
+        List<int[]> states = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        states.add(new int[ALPHABET_SIZE]);
+        lengths.add(0);
+        for (String literal : literals) {
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int c = column(literal.charAt(i));
+                if (states.get(state)[c] == 0) {
+                    states.get(state)[c] = states.size();
+                    states.add(new int[ALPHABET_SIZE]);
+                    lengths.add(0);
+                }
+                state = states.get(state)[c];
+            }
+            lengths.set(state, literal.length());
+        }
+        int[] failures = new int[states.size()];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int next : states.get(0)) {
+            if (next != 0) {
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            if (lengths.get(state) == 0) {
+                lengths.set(state, lengths.get(failures[state]));
+            }
+            int[] row = states.get(state);
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                if (row[c] != 0) {
+                    failures[row[c]] = states.get(failures[state])[c];
+                    queue.add(row[c]);
+                } else {
+                    row[c] = states.get(failures[state])[c];
+                }
+            }
+        }
+        this.transitions = new int[states.size() * ALPHABET_SIZE];
+        this.matchLengths = new int[states.size()];
+        for (int state = 0; state < states.size(); state++) {
+            System.arraycopy(states.get(state), 0, transitions, state * ALPHABET_SIZE, ALPHABET_SIZE);
+            matchLengths[state] = lengths.get(state);
+        }
+    }
+
+    /**
+     * @return the message with the values of sensitive keys masked, or the very same instance if there are none
+     */
+    public String mask(String message) {
+        StringBuilder masked = null;
+        int copied = 0;
+        int state = 0;
+        for (int i = 0, length = message.length(); i < length; i++) {
+            state = transitions[state * ALPHABET_SIZE + column(message.charAt(i))];
+            int matchLength = matchLengths[state];
+            if (matchLength == 0) {
+                continue;
+            }
+            int hitStart = i + 1 - matchLength;
+            int keyStart = hitStart;
+            while (keyStart > copied && isKeyChar(message.charAt(keyStart - 1))) {
+                keyStart--;
+            }
+            int keyEnd = hitStart;
+            while (keyEnd < length && isKeyChar(message.charAt(keyEnd))) {
+                keyEnd++;
+            }
+            int valueStart = valueStart(message, keyEnd);
+            int valueEnd = valueStart == -1 ? -1 : valueEnd(message, valueStart);
+            if (valueEnd <= valueStart || keyStart == keyEnd || !isSensitive(message, keyStart, keyEnd)) {
+                // literals don't span keys, so the rest of this one doesn't need to be scanned
+                if (keyEnd - 1 > i) {
+                    i = keyEnd - 1;
+                    state = 0;
+                }
+                continue;
+            }
+            if (masked == null) {
+                masked = new StringBuilder(length);
+            }
+            masked.append(message, copied, valueStart).append(MASK);
+            copied = valueEnd;
+            // continue scanning after the value, so that nothing in it is taken for a key
+            i = valueEnd - 1;
+            state = 0;
+        }
+        if (masked == null) {
+            return message;
+        }
+        return masked.append(message, copied, message.length()).toString();
+    }
+
+    private boolean isSensitive(String message, int keyStart, int keyEnd) {
+        for (Matcher matcher : matchers.get()) {
+            // region bounds are opaque by default, so \b sees the end of the key as a word boundary
+            boolean matches = matcher.reset(message).region(keyStart, keyEnd).matches();
+            // don't hold on to the message
+            matcher.reset("");
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the value after the separator following the key, or -1 if there's no separator
+     */
+    private static int valueStart(String message, int keyEnd) {
+        int i = skipSpaces(message, keyEnd);
+        if (i == message.length() || SEPARATORS.indexOf(message.charAt(i)) == -1) {
+            return -1;
+        }
+        // not a separator in an URL, like http://host
+        if (i + 1 < message.length() && message.charAt(i + 1) == '/') {
+            return -1;
+        }
+        i = skipSpaces(message, i + 1);
+        if (i < message.length() && isQuote(message.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int valueEnd(String message, int valueStart) {
+        int length = message.length();
+        if (valueStart > 0 && isQuote(message.charAt(valueStart - 1))) {
+            int closingQuote = message.indexOf(message.charAt(valueStart - 1), valueStart);
+            return closingQuote == -1 ? length : closingQuote;
+        }
+        int i = valueStart;
+        while (i < length && !isValueEnd(message.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpaces(String message, int i) {
+        while (i < message.length() && message.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isKeyChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+            || c == '.' || c == '_' || c == '-' || c == '[' || c == ']';
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'';
+    }
+
+    private static boolean isValueEnd(char c) {
+        return Character.isWhitespace(c) || c == ',' || c == ';' || c == '&' || c == ')' || c == '}';
+    }
+
+    private static int column(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c + ('a' - 'A');
+        }
+        return c < ALPHABET_SIZE ? c : 0;
+    }
+}
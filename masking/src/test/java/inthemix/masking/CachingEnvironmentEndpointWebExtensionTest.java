@@ -0,0 +1,52 @@
+package inthemix.masking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.SecurityContext;
+import org.springframework.boot.actuate.endpoint.Show;
+import org.springframework.boot.actuate.env.EnvironmentEndpoint;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEnvironmentEndpointWebExtensionTest {
+
+    private static final SecurityContext ADMIN = new SecurityContext() {
+        @Override
+        public Principal getPrincipal() {
+            return () -> "admin";
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return role.equals("ADMIN");
+        }
+    };
+
+    private final MockEnvironment environment = new MockEnvironment().withProperty("db.url", "jdbc:h2:mem:db");
+    private final CachingEnvironmentEndpointWebExtension extension = new CachingEnvironmentEndpointWebExtension(
+        new EnvironmentEndpoint(environment, List.of(), Show.WHEN_AUTHORIZED), Show.WHEN_AUTHORIZED,
+        Set.of("ADMIN"), new SanitizedSnapshotCache("env", Duration.ofMinutes(5), () -> 1,
+        new SimpleMeterRegistry()));
+
+    @Test
+    void neverServesUnsanitizedSnapshotsToUnauthorizedCallers() {
+        assertThat(value(extension.environment(ADMIN, null))).isEqualTo("jdbc:h2:mem:db");
+        assertThat(value(extension.environment(SecurityContext.NONE, null))).isEqualTo("******");
+        assertThat(value(extension.environment(ADMIN, null))).isEqualTo("jdbc:h2:mem:db");
+
+        assertThat(extension.environmentEntry(ADMIN, "db.url").getBody().getProperty().getValue())
+            .isEqualTo("jdbc:h2:mem:db");
+        assertThat(extension.environmentEntry(SecurityContext.NONE, "db.url").getBody().getProperty().getValue())
+            .isEqualTo("******");
+    }
+
+    private static Object value(EnvironmentEndpoint.EnvironmentDescriptor descriptor) {
+        return descriptor.getPropertySources().get(0).getProperties().get("db.url").getValue();
+    }
+}
@@ -0,0 +1,89 @@
+package inthemix.masking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Compares matching property names against the sanitizing key patterns one pattern at a time, as the actuator's
+ * default sanitizing does, with {@link KeyPatternMatcher}'s combined pattern, with and without its memoized results.
+ * Without memoizing, every call matches a different key of a set of 64, most of which don't match, as in an actual
+ * environment. In the matcher's package rather than a benchmarks one, since the matcher isn't public.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=KeyPatternMatcherBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyPatternMatcherBenchmark {
+
+    public enum Matching { PER_PATTERN, COMBINED, MEMOIZED }
+
+    @Param
+    Matching matching;
+
+    @Param({ "4", "16" })
+    int patternCount;
+
+    private List<Pattern> patterns;
+    private KeyPatternMatcher matcher;
+    private String[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Pattern> patterns = new ArrayList<>(new SanitizingProperties().getKeyPatternsToMask());
+        for (int i = patterns.size(); i < patternCount; i++) {
+            patterns.add(Pattern.compile(".+credential" + i + "\\b.*"));
+        }
+        this.patterns = patterns;
+        // memoizing nothing, the memo never holds more than the key matched last
+        matcher = new KeyPatternMatcher(patterns, matching == Matching.MEMOIZED ? 10_000 : 0);
+        keys = IntStream.range(0, 64)
+            .mapToObj(i -> i % 8 == 0 ? "backend" + i + ".api-key" : "spring.datasource.hikari.pool" + i + ".size")
+            .toArray(String[]::new);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        String key = keys[next++ & (keys.length - 1)];
+        if (matching == Matching.PER_PATTERN) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(key).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return matcher.matches(key);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(KeyPatternMatcherBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,46 @@
+package inthemix.masking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeyPatternMatcherTest {
+
+    @Test
+    void matchesAnyOfThePatterns() {
+        var matcher = new KeyPatternMatcher(new SanitizingProperties().getKeyPatternsToMask(), 100);
+
+        assertThat(matcher.matches("some.secret")).isTrue();
+        assertThat(matcher.matches("backend.token-1")).isTrue();
+        assertThat(matcher.matches("secrets.rotation")).isFalse();
+        assertThat(matcher.matches("some.config")).isFalse();
+    }
+
+    @Test
+    void keepsFlagsPerPattern() {
+        var matcher = new KeyPatternMatcher(
+            List.of(Pattern.compile(".+password", Pattern.CASE_INSENSITIVE), Pattern.compile(".+token")), 100);
+
+        assertThat(matcher.matches("db.PASSWORD")).isTrue();
+        assertThat(matcher.matches("api.TOKEN")).isFalse();
+    }
+
+    @Test
+    void matchesPatternsWithTheSameNamedGroupsSeparately() {
+        var matcher = new KeyPatternMatcher(List.of(
+            Pattern.compile("(?<prefix>.+)\\.password"),
+            Pattern.compile("(?<prefix>.+)\\.token"),
+            Pattern.compile("(.)\\1+\\.key"),
+            Pattern.compile(".+(?<=api)\\.secret")), 100);
+
+        assertThat(matcher.matches("db.password")).isTrue();
+        assertThat(matcher.matches("api.token")).isTrue();
+        assertThat(matcher.matches("aa.key")).isTrue();
+        assertThat(matcher.matches("ab.key")).isFalse();
+        assertThat(matcher.matches("my.api.secret")).isTrue();
+        assertThat(matcher.matches("my.secret")).isFalse();
+    }
+}
@@ -0,0 +1,120 @@
+package inthemix.masking;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SanitizedSnapshotCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private final SanitizedSnapshotCache cache = new SanitizedSnapshotCache("env", Duration.ofMinutes(5),
+        version::get, meterRegistry, nanoTime::get);
+    private final AtomicInteger builds = new AtomicInteger();
+
+    @Test
+    void servesTheSnapshotUntilSomethingChanges() {
+        assertThat(get("key")).isEqualTo(1);
+        assertThat(get("key")).isEqualTo(1);
+
+        version.incrementAndGet();
+
+        assertThat(get("key")).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildsAfterAnEnvironmentChangeEvent() {
+        get("key");
+
+        cache.onApplicationEvent(new EnvironmentChangeEvent(this));
+
+        assertThat(get("key")).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildsAfterTheRefreshInterval() {
+        get("key");
+        nanoTime.addAndGet(Duration.ofMinutes(5).minusNanos(1).toNanos());
+        assertThat(get("key")).isEqualTo(1);
+
+        nanoTime.incrementAndGet();
+
+        assertThat(get("key")).isEqualTo(2);
+    }
+
+    @Test
+    void keepsSnapshotsPerKey() {
+        assertThat(get("a")).isEqualTo(1);
+        assertThat(get("b")).isEqualTo(2);
+        assertThat(get("a")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsTheOldestSnapshotWhenFull() {
+        for (int i = 0; i < 64; i++) {
+            get("key" + i);
+            nanoTime.incrementAndGet();
+        }
+
+        get("one too many");
+
+        assertThat(get("key1")).isEqualTo(2);
+        assertThat(get("key0")).isEqualTo(66);
+    }
+
+    @Test
+    void doesntHoldUpOtherKeysWhileRebuilding() throws Exception {
+        var building = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        CompletableFuture<Object> slow = CompletableFuture.supplyAsync(() -> cache.get("slow", () -> {
+            building.countDown();
+            await(release);
+            return "slow";
+        }));
+        try {
+            assertThat(building.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(CompletableFuture.supplyAsync(() -> get("fast")).get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+
+    @Test
+    void countsHitsMissesAndRebuilds() {
+        get("key");
+        get("key");
+        get("key");
+
+        assertThat(meterRegistry.get("actuator.snapshot.requests").tag("result", "hit").counter().count())
+            .isEqualTo(2);
+        assertThat(meterRegistry.get("actuator.snapshot.requests").tag("result", "miss").counter().count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.get("actuator.snapshot.rebuild").tag("endpoint", "env").timer().count())
+            .isEqualTo(1);
+    }
+
+    private Object get(String key) {
+        return cache.get(key, builds::incrementAndGet);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package inthemix.masking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link SecretMasker} with the obvious way of masking log messages: finding every {@code key=value} pair
+ * with a regex and matching its key against each of the sanitizing key patterns. Measured for a message without any
+ * pairs, one with pairs but no secrets, which is what most log messages look like, and one with a secret.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=SecretMaskerBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SecretMaskerBenchmark {
+
+    public enum Masker { REGEX, SECRET_MASKER }
+
+    public enum Message {
+        NO_PAIRS("Completed initialization in 2 ms for the dispatcher servlet of the web application context"),
+        PAIRS("Fetched order id=8231 for customer=acme-corp from cache=orders in elapsed=12ms, status: SHIPPED"),
+        SECRET("Connecting to jdbc:postgresql://db:5432/orders with user=orders db.password=Welkom123 timeout=30s");
+
+        final String text;
+
+        Message(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final Pattern PAIR = Pattern.compile("([A-Za-z0-9._\\[\\]-]+) *[=:] *([^\\s,;&)}]+)");
+
+    @Param
+    Masker masker;
+
+    @Param
+    Message message;
+
+    private List<Pattern> patterns;
+    private SecretMasker secretMasker;
+
+    @Setup
+    public void setUp() {
+        patterns = new SanitizingProperties().getKeyPatternsToMask();
+        secretMasker = new SecretMasker(patterns);
+    }
+
+    @Benchmark
+    public String mask() {
+        return masker == Masker.SECRET_MASKER ? secretMasker.mask(message.text) : maskWithRegex(message.text);
+    }
+
+    private String maskWithRegex(String text) {
+        Matcher pair = PAIR.matcher(text);
+        StringBuilder masked = null;
+        int copied = 0;
+        while (pair.find()) {
+            if (pair.group(2).startsWith("/") || !isSensitive(pair.group(1))) {
+                continue;
+            }
+            if (masked == null) {
+                masked = new StringBuilder(text.length());
+            }
+            masked.append(text, copied, pair.start(2)).append(SecretMasker.MASK);
+            copied = pair.end(2);
+        }
+        return masked == null ? text : masked.append(text, copied, text.length()).toString();
+    }
+
+    private boolean isSensitive(String key) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(SecretMaskerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
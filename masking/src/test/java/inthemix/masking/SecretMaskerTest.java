@@ -0,0 +1,69 @@
+package inthemix.masking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SecretMaskerTest {
+
+    private final SecretMasker masker = new SecretMasker(new SanitizingProperties().getKeyPatternsToMask());
+
+    @Test
+    void masksValuesOfSensitiveKeys() {
+        assertThat(masker.mask("connecting with my.password=Welkom123 to db"))
+            .isEqualTo("connecting with my.password=****** to db");
+        assertThat(masker.mask("api.token: abc, user=joe")).isEqualTo("api.token: ******, user=joe");
+        assertThat(masker.mask("a.secret=1&b.secret=2")).isEqualTo("a.secret=******&b.secret=******");
+    }
+
+    @Test
+    void masksQuotedValuesUpToTheClosingQuote() {
+        assertThat(masker.mask("db.password: \"hello world\" and more"))
+            .isEqualTo("db.password: \"******\" and more");
+        assertThat(masker.mask("db.password='it, is; secret'")).isEqualTo("db.password='******'");
+    }
+
+    @Test
+    void doesntTakeTheColonOfAnUrlForASeparator() {
+        var masker = new SecretMasker(List.of(Pattern.compile("(?i)h.*p"), Pattern.compile(".+password\\b.*")));
+
+        assertThat(masker.mask("url=http://u:pw@host")).isEqualTo("url=http://u:pw@host");
+        assertThat(masker.mask("calling http://host/my.password=x"))
+            .isEqualTo("calling http://host/my.password=******");
+    }
+
+    @Test
+    void returnsTheSameInstanceWhenThereIsNothingToMask() {
+        String message = "my.password is not set, user=joe";
+
+        assertThat(masker.mask(message)).isSameAs(message);
+    }
+
+    @Test
+    void matchesKeysAgainstPatternsThatArentALiteral() {
+        var masker = new SecretMasker(List.of(Pattern.compile("pin[0-9]+"), Pattern.compile(".+password\\b.*")));
+
+        assertThat(masker.mask("pin1=1234 pin=5678 pins=9 my.password=x"))
+            .isEqualTo("pin1=****** pin=5678 pins=9 my.password=******");
+    }
+
+    @Test
+    void matchesKeysCaseInsensitivelyOnlyWhenThePatternDoes() {
+        var masker = new SecretMasker(List.of(Pattern.compile("(?i).+password"), Pattern.compile(".+token")));
+
+        assertThat(masker.mask("DB.PASSWORD=x API.TOKEN=y")).isEqualTo("DB.PASSWORD=****** API.TOKEN=y");
+    }
+
+    /**
+     * A limitation: JSON keys end in a quote rather than a separator, so they're not recognized as keys.
+     */
+    @Test
+    void doesntMaskJson() {
+        String json = "{\"db.password\":\"p\"}";
+
+        assertThat(masker.mask(json)).isSameAs(json);
+    }
+}
@@ -0,0 +1,15 @@
+package org.springframework.cloud.context.environment;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Stands in for Spring Cloud's event, which {@code SanitizedSnapshotCache} recognizes by name.
+ */
+public class EnvironmentChangeEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    public EnvironmentChangeEvent(Object source) {
+        super(source);
+    }
+}
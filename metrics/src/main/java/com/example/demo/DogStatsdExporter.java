@@ -0,0 +1,335 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends all meters to a DogStatsD agent over UDP, as an alternative to the {@code DatadogMeterRegistry} which posts
+ * large JSON payloads over HTTP.
+ * <p>
+ * Application threads only record into their meters as usual: once every {@code step}, a single exporter thread reads
+ * the meters and writes them as DogStatsD lines, packed into datagrams of at most {@code maxPacketSize} bytes. The
+ * name and tags of every line are encoded once per meter, and numbers are written straight into a reusable buffer,
+ * so exporting doesn't allocate per value. Cumulative values, like counts, are sent as counter deltas since the
+ * previous export; others as gauges.
+ * <p>
+ * The channel is non-blocking and only one datagram is buffered: when the OS send buffer is full or the agent isn't
+ * there, datagrams are dropped and counted in {@code dogstatsd.datagrams{result=dropped}}, rather than held up.
+ */
+@Component
+@ConditionalOnProperty(name = "metrics.dogstatsd.enabled", havingValue = "true")
+public class DogStatsdExporter implements SmartLifecycle {
+
+    private static final byte[] COUNTER_TYPE = "|c".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GAUGE_TYPE = "|g".getBytes(StandardCharsets.UTF_8);
+    /** Fractions are written with this many decimals, and values with a larger magnitude than this as integers */
+    private static final int DECIMALS = 6;
+    private static final double MAX_FRACTIONAL = 1e12;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final MeterRegistry meterRegistry;
+    private final InetSocketAddress agent;
+    private final Duration step;
+    private final ByteBuffer packet;
+    private final ByteBuffer line;
+    /** Per meter, its encoded lines and previous values; only touched by the exporter thread */
+    private final Map<Meter.Id, Series> series = new HashMap<>();
+    private final Counter sentDatagrams;
+    private final Counter droppedDatagrams;
+    private final Counter droppedLines;
+    private DatagramChannel channel;
+    private ScheduledExecutorService exporter;
+    private long generation;
+
+    public DogStatsdExporter(MeterRegistry meterRegistry,
+                             @Value("${metrics.dogstatsd.host:localhost}") String host,
+                             @Value("${metrics.dogstatsd.port:8125}") int port,
+                             @Value("${metrics.dogstatsd.step:10s}") Duration step,
+                             // fits in an Ethernet frame, together with the IP and UDP headers
+                             @Value("${metrics.dogstatsd.max-packet-size:1432}") int maxPacketSize) {
+        this.meterRegistry = meterRegistry;
+        this.agent = new InetSocketAddress(host, port);
+        this.step = step;
+        this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+        this.line = ByteBuffer.allocate(maxPacketSize);
+        this.sentDatagrams = datagramCounter("sent", meterRegistry);
+        this.droppedDatagrams = datagramCounter("dropped", meterRegistry);
+        this.droppedLines = Counter.builder("dogstatsd.lines.dropped")
+                .description("Lines not sent because they don't fit in a datagram")
+                .register(meterRegistry);
+    }
+
+    private static Counter datagramCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("dogstatsd.datagrams")
+                .description("Datagrams sent to the DogStatsD agent, or dropped as they couldn't be sent right away")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        try {
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(agent);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open channel to DogStatsD agent at " + agent, e);
+        }
+        exporter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("dogstatsd-exporter").daemon().factory());
+        exporter.scheduleAtFixedRate(this::exportSafely, step.toMillis(), step.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Exports one last time, so that what was recorded since the previous export isn't lost.
+     */
+    @Override
+    public void stop() {
+        exporter.shutdown();
+        try {
+            if (exporter.awaitTermination(step.toMillis(), TimeUnit.MILLISECONDS)) {
+                exportSafely();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close DogStatsD channel", e);
+        }
+        exporter = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return exporter != null;
+    }
+
+    private void exportSafely() {
+        try {
+            export();
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled export
+            logger.warn("Failed to export metrics to DogStatsD", e);
+        }
+    }
+
+    synchronized void export() {
+        generation++;
+        for (Meter meter : meterRegistry.getMeters()) {
+            Series current = series.get(meter.getId());
+            if (current == null) {
+                current = new Series(meter);
+                series.put(meter.getId(), current);
+            }
+            current.generation = generation;
+            write(meter, current);
+        }
+        sendPacket();
+        // forget meters that have been removed from the registry
+        if (series.size() > meterRegistry.getMeters().size()) {
+            series.values().removeIf(s -> s.generation != generation);
+        }
+    }
+
+    private void write(Meter meter, Series series) {
+        if (meter instanceof Counter counter) {
+            writeDelta(series, 0, counter.count());
+        } else if (meter instanceof TimeGauge timeGauge) {
+            writeGauge(series, 0, timeGauge.value(TimeUnit.MILLISECONDS));
+        } else if (meter instanceof Gauge gauge) {
+            writeGauge(series, 0, gauge.value());
+        } else if (meter instanceof Timer timer) {
+            writeDelta(series, 0, timer.count());
+            writeDelta(series, 1, timer.totalTime(TimeUnit.MILLISECONDS));
+            writeGauge(series, 2, timer.max(TimeUnit.MILLISECONDS));
+        } else if (meter instanceof DistributionSummary summary) {
+            writeDelta(series, 0, summary.count());
+            writeDelta(series, 1, summary.totalAmount());
+            writeGauge(series, 2, summary.max());
+        } else if (meter instanceof LongTaskTimer longTaskTimer) {
+            writeGauge(series, 0, longTaskTimer.activeTasks());
+            writeGauge(series, 1, longTaskTimer.duration(TimeUnit.MILLISECONDS));
+        } else if (meter instanceof FunctionCounter counter) {
+            writeDelta(series, 0, counter.count());
+        } else if (meter instanceof FunctionTimer timer) {
+            writeDelta(series, 0, timer.count());
+            writeDelta(series, 1, timer.totalTime(TimeUnit.MILLISECONDS));
+        } else {
+            int i = 0;
+            for (Measurement measurement : meter.measure()) {
+                if (i == series.names.length) {
+                    break;
+                }
+                writeGauge(series, i++, measurement.getValue());
+            }
+        }
+    }
+
+    private void writeDelta(Series series, int i, double cumulative) {
+        double delta = cumulative - series.previous[i];
+        series.previous[i] = cumulative;
+        // a drop means the meter was reset, its new value is what has been recorded since
+        writeLine(series, i, delta < 0 ? cumulative : delta, COUNTER_TYPE);
+    }
+
+    private void writeGauge(Series series, int i, double value) {
+        writeLine(series, i, value, GAUGE_TYPE);
+    }
+
+    private void writeLine(Series series, int i, double value, byte[] type) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        line.clear();
+        try {
+            line.put(series.names[i]);
+            putNumber(line, value);
+            line.put(type).put(series.tags);
+        } catch (BufferOverflowException e) {
+            droppedLines.increment();
+            return;
+        }
+        line.flip();
+        if (packet.remaining() < line.remaining()) {
+            sendPacket();
+        }
+        packet.put(line);
+    }
+
+    private void sendPacket() {
+        if (packet.position() == 0) {
+            return;
+        }
+        packet.flip();
+        try {
+            if (channel.write(packet) > 0) {
+                sentDatagrams.increment();
+            } else {
+                droppedDatagrams.increment();
+            }
+        } catch (IOException e) {
+            // like a PortUnreachableException when no agent is listening
+            droppedDatagrams.increment();
+        }
+        packet.clear();
+    }
+
+    /**
+     * Writes the value as decimal ASCII, like {@code 12.5} or {@code 3}, without going through a {@code String}.
+     */
+    static void putNumber(ByteBuffer buffer, double value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        if (value >= MAX_FRACTIONAL) {
+            putDigits(buffer, Math.round(value), 1);
+            return;
+        }
+        long scaled = Math.round(value * 1_000_000);
+        putDigits(buffer, scaled / 1_000_000, 1);
+        long fraction = scaled % 1_000_000;
+        if (fraction != 0) {
+            int decimals = DECIMALS;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                decimals--;
+            }
+            buffer.put((byte) '.');
+            putDigits(buffer, fraction, decimals);
+        }
+    }
+
+    private static void putDigits(ByteBuffer buffer, long value, int minDigits) {
+        long divisor = 1;
+        int digits = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+            digits++;
+        }
+        for (; minDigits > digits; minDigits--) {
+            buffer.put((byte) '0');
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * The encoded parts of the lines of one meter, with the values of the previous export for sending deltas.
+     */
+    private static class Series {
+
+        final byte[][] names;
+        final byte[] tags;
+        final double[] previous;
+        long generation;
+
+        Series(Meter meter) {
+            String name = meter.getId().getName();
+            List<String> lineNames = new ArrayList<>();
+            if (meter instanceof Timer || meter instanceof DistributionSummary) {
+                lineNames.addAll(List.of(name + ".count", name + ".sum", name + ".max"));
+            } else if (meter instanceof LongTaskTimer) {
+                lineNames.addAll(List.of(name + ".active", name + ".duration"));
+            } else if (meter instanceof FunctionTimer) {
+                lineNames.addAll(List.of(name + ".count", name + ".sum"));
+            } else if (meter instanceof Counter || meter instanceof Gauge || meter instanceof FunctionCounter) {
+                lineNames.add(name);
+            } else {
+                for (Measurement measurement : meter.measure()) {
+                    lineNames.add(name + "." + measurement.getStatistic().getTagValueRepresentation());
+                }
+            }
+            this.names = lineNames.stream()
+                    .map(lineName -> (lineName + ":").getBytes(StandardCharsets.UTF_8))
+                    .toArray(byte[][]::new);
+            StringBuilder tags = new StringBuilder();
+            for (Tag tag : meter.getId().getTagsAsIterable()) {
+                tags.append(tags.isEmpty() ? "|#" : ",").append(sanitize(tag.getKey())).append(':')
+                        .append(sanitize(tag.getValue()));
+            }
+            this.tags = tags.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+            this.previous = new double[names.length];
+        }
+
+        /** Characters that separate the parts of a line can't be part of a tag */
+        private static String sanitize(String value) {
+            return value.replace('|', '_').replace(',', '_').replace('\n', '_');
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Meter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Meters for each constant of an enum that's used as tag value, registered once up front. Looking up a meter is an
+ * array index, instead of building a meter id, sorting its tags and looking it up in the registry for every recording.
+ * <p>
+ * As a side effect, meters for all values are published from the start, even before anything has been recorded.
+ */
+public class EnumMeterCache<E extends Enum<E>, M extends Meter> {
+
+    private final Map<E, M> meters;
+
+    /**
+     * @param meterFactory registers the meter for an enum constant
+     */
+    public EnumMeterCache(Class<E> enumType, Function<E, M> meterFactory) {
+        this.meters = new EnumMap<>(enumType);
+        for (E value : enumType.getEnumConstants()) {
+            meters.put(value, meterFactory.apply(value));
+        }
+    }
+
+    public M get(E value) {
+        return meters.get(value);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.demo;
 import io.micrometer.common.KeyValues;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,7 +13,9 @@ import org.springframework.http.client.observation.ClientRequestObservationConte
 import org.springframework.http.client.observation.ClientRequestObservationConvention;
 import org.springframework.http.client.observation.DefaultClientRequestObservationConvention;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
 @Configuration
 public class MetricsConfig {
@@ -76,4 +79,24 @@ public class MetricsConfig {
         });
     }
 
+    /**
+     * Goes further than {@link #queryParameterStrippingMeterFilter()}: URIs built by concatenation, like the ones
+     * with EANs in them, also get their identifiers replaced, so that the {@code uri} tag has a bounded number of
+     * values and the registry doesn't keep growing.
+     *
+     * @see UriTemplateNormalizer
+     */
+    @Bean
+    UriTemplateNormalizer uriTemplateNormalizer(
+            @Value("${metrics.uri-normalizer.id-patterns:}") List<Pattern> idPatterns,
+            @Value("${metrics.uri-normalizer.max-values-per-segment:100}") int maxValuesPerSegment,
+            @Value("${metrics.uri-normalizer.cache-size:10000}") int cacheSize) {
+        return new UriTemplateNormalizer(idPatterns, maxValuesPerSegment, cacheSize);
+    }
+
+    @Bean @Order(-10)
+    MeterFilter uriNormalizingMeterFilter(UriTemplateNormalizer uriTemplateNormalizer) {
+        return MeterFilter.replaceTagValues("uri", uriTemplateNormalizer::normalize);
+    }
+
 }
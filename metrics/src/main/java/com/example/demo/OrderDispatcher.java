@@ -0,0 +1,208 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sends orders to the backend asynchronously and in batches, so request threads don't wait for the backend.
+ * <p>
+ * Orders are accepted into a bounded queue. A single thread takes them from the queue and groups them into batches
+ * of at most {@code batchSize} orders, waiting at most {@code maxDelay} for a batch to fill up. Each batch is sent on
+ * its own virtual thread, with at most {@code maxConcurrency} batches in flight: when the backend can't keep up, the
+ * batching thread waits for a permit, the queue fills up and new orders are rejected, which the controller turns
+ * into a {@code 429}.
+ * <p>
+ * Orders that fail to be sent are logged and counted, but not retried.
+ * <p>
+ * The dispatcher starts before and stops after the web server, so that it accepts orders for as long as requests
+ * come in, and sends all of them before the application exits.
+ */
+@Component
+public class OrderDispatcher implements SmartLifecycle {
+
+    private record PendingOrder(SalesController.Order order, long acceptedNanos) { }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final RestTemplate restTemplate;
+    private final BlockingQueue<PendingOrder> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Semaphore inFlightBatches;
+    private ExecutorService senders;
+    private final DistributionSummary batchSizes;
+    private final Timer dispatchedLatency;
+    private final Timer failedLatency;
+    private volatile boolean running;
+    private Thread batcher;
+
+    public OrderDispatcher(RestTemplateBuilder builder, MeterRegistry meterRegistry,
+                           @Value("${orders.dispatch.queue-capacity:1000}") int queueCapacity,
+                           @Value("${orders.dispatch.batch-size:50}") int batchSize,
+                           @Value("${orders.dispatch.max-delay:50ms}") Duration maxDelay,
+                           @Value("${orders.dispatch.max-concurrency:8}") int maxConcurrency) {
+        this.restTemplate = builder.build();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.inFlightBatches = new Semaphore(maxConcurrency);
+
+        Gauge.builder("orders.dispatch.queue.depth", queue, BlockingQueue::size)
+                .description("Orders accepted but not yet sent to the backend")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("orders.dispatch.batch.size")
+                .description("Number of orders sent to the backend per request")
+                .register(meterRegistry);
+        this.dispatchedLatency = latencyTimer("success", meterRegistry);
+        this.failedLatency = latencyTimer("failure", meterRegistry);
+    }
+
+    private static Timer latencyTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("orders.dispatch.latency")
+                .description("Time from accepting an order until the backend has processed it")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return {@code false} if the order was rejected because too many orders are waiting to be sent
+     */
+    public boolean dispatch(SalesController.Order order) {
+        return running && queue.offer(new PendingOrder(order, System.nanoTime()));
+    }
+
+    /**
+     * Variant of {@link #dispatch(SalesController.Order)} that waits for room in the queue, for callers that can
+     * slow down their producer instead, like a client streaming orders.
+     *
+     * @return {@code false} if the order was rejected because the queue remained full for the given timeout
+     */
+    public boolean dispatch(SalesController.Order order, Duration timeout) throws InterruptedException {
+        return running
+                && queue.offer(new PendingOrder(order, System.nanoTime()), timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void start() {
+        // a new one on every start, because stop closes it
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        batcher = Thread.ofVirtual().name("order-batcher").start(this::batchOrders);
+    }
+
+    /**
+     * Stops accepting orders, and waits for the ones already accepted to be sent.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            // not there if the context failed to start
+            if (batcher != null) {
+                batcher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // orders accepted by requests that saw the dispatcher running, but were queued after the batcher's last look
+        List<PendingOrder> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int i = 0; i < rest.size(); i += batchSize) {
+            send(List.copyOf(rest.subList(i, Math.min(i + batchSize, rest.size()))));
+        }
+        if (senders != null) {
+            senders.close();
+        }
+    }
+
+    /**
+     * Below the phase of the web server, {@code SMART_LIFECYCLE_PHASE - 1024}, to start before and stop after it.
+     */
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void batchOrders() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    // take what's there without waiting, and only wait for more until the deadline
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        PendingOrder next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                inFlightBatches.acquire();
+                List<PendingOrder> toSend = List.copyOf(batch);
+                batch.clear();
+                senders.execute(() -> {
+                    try {
+                        send(toSend);
+                    } finally {
+                        inFlightBatches.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Order batching interrupted, {} orders not sent", queue.size() + batch.size());
+        }
+    }
+
+    private void send(List<PendingOrder> batch) {
+        batchSizes.record(batch.size());
+        List<SalesController.Order> orders = batch.stream().map(PendingOrder::order).toList();
+        String eans = orders.stream().map(SalesController.Order::ean).collect(Collectors.joining(","));
+        Timer latency = dispatchedLatency;
+        try {
+            logger.info("Placing {} orders", orders.size());
+            // in this particular case you *should* use URI template vars, but that's not always an option
+            restTemplate.postForObject("http://httpbin/post?ean=" + eans, orders, String.class);
+        } catch (RestClientException e) {
+            logger.error("Failed to place {} orders with EANs {}", orders.size(), eans, e);
+            latency = failedLatency;
+        }
+        long now = System.nanoTime();
+        for (PendingOrder pending : batch) {
+            latency.record(now - pending.acceptedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shows the revenue per order category at {@code /actuator/revenue}, or for one window at
+ * {@code /actuator/revenue/minute} or {@code /actuator/revenue/hour}. Reading doesn't block orders being placed.
+ */
+@Component
+@Endpoint(id = "revenue")
+public class RevenueEndpoint {
+
+    public record CategoryRevenue(long orders, long quantity, BigDecimal revenue) { }
+
+    private final RevenueTracker revenueTracker;
+
+    public RevenueEndpoint(RevenueTracker revenueTracker) {
+        this.revenueTracker = revenueTracker;
+    }
+
+    @ReadOperation
+    public Map<String, Map<SalesController.Category, CategoryRevenue>> revenue() {
+        Map<String, Map<SalesController.Category, CategoryRevenue>> revenue = new LinkedHashMap<>();
+        for (RevenueTracker.Window window : RevenueTracker.Window.values()) {
+            revenue.put(window.name().toLowerCase(Locale.ROOT), revenue(window));
+        }
+        return revenue;
+    }
+
+    @ReadOperation
+    public Map<SalesController.Category, CategoryRevenue> window(@Selector RevenueTracker.Window window) {
+        return revenue(window);
+    }
+
+    private Map<SalesController.Category, CategoryRevenue> revenue(RevenueTracker.Window window) {
+        Map<SalesController.Category, CategoryRevenue> revenue = new LinkedHashMap<>();
+        revenueTracker.totals(window).forEach((category, totals) -> revenue.put(category,
+                new CategoryRevenue(totals.count(), totals.quantity(), BigDecimal.valueOf(totals.cents(), 2))));
+        return revenue;
+    }
+}
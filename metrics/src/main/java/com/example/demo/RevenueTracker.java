@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Exact revenue per order category over the last minute and hour, which the {@code orders} distribution summary
+ * can't provide, as it records prices as {@code double}s and only knows about the current step.
+ * Amounts are kept in cents.
+ *
+ * @see RevenueEndpoint
+ */
+@Component
+public class RevenueTracker {
+
+    public enum Window {
+        MINUTE(Duration.ofMinutes(1)), HOUR(Duration.ofHours(1));
+
+        private final Duration duration;
+
+        Window(Duration duration) {
+            this.duration = duration;
+        }
+    }
+
+    /** Indexed by window and category ordinal */
+    private final RollingWindow[][] windows;
+
+    public RevenueTracker() {
+        windows = new RollingWindow[Window.values().length][SalesController.Category.values().length];
+        for (Window window : Window.values()) {
+            for (SalesController.Category category : SalesController.Category.values()) {
+                // one-second buckets for the last minute, one-minute buckets for the last hour
+                windows[window.ordinal()][category.ordinal()] =
+                        new RollingWindow(window.duration, 60, System::nanoTime);
+            }
+        }
+    }
+
+    public void record(SalesController.Order order) {
+        long cents = cents(order);
+        for (RollingWindow[] perCategory : windows) {
+            perCategory[order.category().ordinal()].record(order.quantity(), cents);
+        }
+    }
+
+    /**
+     * @return the amount of the order, rounded to cents
+     * @throws ArithmeticException if that's too large to keep track of
+     */
+    static long cents(SalesController.Order order) {
+        return order.price().multiply(BigDecimal.valueOf(order.quantity()))
+                .movePointRight(2)
+                .setScale(0, RoundingMode.HALF_UP)
+                .longValueExact();
+    }
+
+    public Map<SalesController.Category, RollingWindow.Totals> totals(Window window) {
+        Map<SalesController.Category, RollingWindow.Totals> totals = new EnumMap<>(SalesController.Category.class);
+        for (SalesController.Category category : SalesController.Category.values()) {
+            totals.put(category, windows[window.ordinal()][category.ordinal()].totals());
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Count, quantity and amount in cents of what was recorded during the last {@code window}, kept in a ring of
+ * buckets that each cover an equal part of it.
+ * <p>
+ * Recording adds to the {@link LongAdder}s of the current bucket, which spread contending threads over separate
+ * cells instead of having them retry on a single value. When a bucket's time has come around again, it's replaced
+ * by a fresh one with a compare-and-set, so neither recording nor reading ever takes a lock, and reading doesn't stop
+ * writers: it sums the buckets within the window, including the current one that is still being filled.
+ */
+public class RollingWindow {
+
+    public record Totals(long count, long quantity, long cents) { }
+
+    private static final class Bucket {
+
+        final long epoch;
+        final LongAdder count = new LongAdder();
+        final LongAdder quantity = new LongAdder();
+        final LongAdder cents = new LongAdder();
+
+        Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private final long bucketNanos;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param bucketCount the number of parts the window is divided into, a trade-off between accuracy at the start
+     *                    of the window and the work needed to read it
+     * @param nanoClock like {@link System#nanoTime()}
+     */
+    public RollingWindow(Duration window, int bucketCount, LongSupplier nanoClock) {
+        this.bucketNanos = window.toNanos() / bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount);
+        this.nanoClock = nanoClock;
+    }
+
+    public void record(long quantity, long cents) {
+        Bucket bucket = currentBucket();
+        bucket.count.increment();
+        bucket.quantity.add(quantity);
+        bucket.cents.add(cents);
+    }
+
+    public Totals totals() {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+        long count = 0;
+        long quantity = 0;
+        long cents = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null && bucket.epoch > epoch - buckets.length() && bucket.epoch <= epoch) {
+                count += bucket.count.sum();
+                quantity += bucket.quantity.sum();
+                cents += bucket.cents.sum();
+            }
+        }
+        return new Totals(count, quantity, cents);
+    }
+
+    private Bucket currentBucket() {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+        int index = Math.floorMod(epoch, buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            // a newer bucket means another thread read the clock later but got here first: close enough
+            if (bucket != null && bucket.epoch >= epoch) {
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch);
+            if (buckets.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+}
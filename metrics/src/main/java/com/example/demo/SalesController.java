@@ -1,50 +1,163 @@
 package com.example.demo;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 public class SalesController {
 
-    private RestTemplate restTemplate;
-    private MeterRegistry meterRegistry;
-    private Logger logger = LoggerFactory.getLogger(getClass());
+    /** How long a bulk upload waits for room in the dispatch queue before giving up on an order */
+    private static final Duration BULK_DISPATCH_TIMEOUT = Duration.ofSeconds(1);
+    /** Keeps the response of a large upload with many bad orders small; the counts are always complete */
+    private static final int MAX_REPORTED_FAILURES = 100;
 
-    public SalesController(RestTemplateBuilder builder, MeterRegistry meterRegistry) {
-        this.restTemplate = builder.build();
-        this.meterRegistry = meterRegistry;
+    private OrderDispatcher orderDispatcher;
+    private ObjectMapper objectMapper;
+    private RevenueTracker revenueTracker;
+    private EnumMeterCache<Category, DistributionSummary> orderSummaries;
+
+    public SalesController(OrderDispatcher orderDispatcher, ObjectMapper objectMapper, RevenueTracker revenueTracker,
+                           MeterRegistry meterRegistry) {
+        this.orderDispatcher = orderDispatcher;
+        this.objectMapper = objectMapper;
+        this.revenueTracker = revenueTracker;
+        // registered once, rather than looked up in the registry for every order
+        this.orderSummaries = new EnumMeterCache<>(Category.class, category -> DistributionSummary.builder("orders")
+                .baseUnit("euros")
+                .tag("category", category.name())
+                // other tags here...
+                .register(meterRegistry));
     }
 
     enum Category { INSTRUMENT, SPEAKER, LIGHTING }
     record Order(String ean, Category category, int quantity, BigDecimal price) {}
+    record BulkResult(int accepted, int rejected, int invalid, List<Failure> failures) {}
+    /**
+     * @param record the position of the order in the upload, starting at 1
+     * @param line the line the order starts on
+     */
+    record Failure(int record, int line, String reason) {}
 
     @PostMapping("/order")
-    void order(@RequestBody Order order) {
-        placeOrder(order);
+    ResponseEntity<Void> order(@RequestBody Order order) {
+        // checked before it's sent, as it can't be taken back once it's accepted
+        String problem = validate(order);
+        if (problem != null) {
+            return ResponseEntity.of(ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, problem)).build();
+        }
+        // the order is sent to the backend asynchronously, as part of a batch
+        if (!orderDispatcher.dispatch(order)) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
         registerMetric(order);
+        return ResponseEntity.accepted().build();
     }
 
-    private void registerMetric(Order order) {
-        DistributionSummary.builder("orders")
-                .baseUnit("euros")
-                .tag("category", order.category.name())
-                // other tags here...
-                .register(meterRegistry)
-                .record(order.price().doubleValue());
+    /**
+     * Places the orders from an NDJSON stream or a JSON array as they are read, instead of binding the whole upload to
+     * a list first: the streaming parser only ever holds one order, so memory use doesn't depend on the upload size.
+     * When the dispatch queue is full, reading waits for room, which slows down the client rather than rejecting its
+     * orders.
+     * <p>
+     * Orders that can't be bound or are invalid, like {@code null} or lacking a category or price, are reported and
+     * skipped. After a syntax error the stream can't be trusted anymore, so that's reported and the rest of the upload
+     * is ignored.
+     */
+    @PostMapping(path = "/orders", consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    BulkResult orders(InputStream body) throws IOException, InterruptedException {
+        int accepted = 0;
+        int rejected = 0;
+        int invalid = 0;
+        List<Failure> failures = new ArrayList<>();
+        int record = 1;
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    int line = parser.currentTokenLocation().getLineNr();
+                    // only this order is materialized, and binding problems don't affect the orders that follow
+                    JsonNode node = objectMapper.readTree(parser);
+                    Order order = null;
+                    String problem;
+                    try {
+                        order = objectMapper.treeToValue(node, Order.class);
+                        problem = validate(order);
+                    } catch (JsonProcessingException e) {
+                        problem = e.getOriginalMessage();
+                    }
+                    if (problem != null) {
+                        invalid++;
+                        addFailure(failures, new Failure(record, line, problem));
+                    } else if (orderDispatcher.dispatch(order, BULK_DISPATCH_TIMEOUT)) {
+                        accepted++;
+                        registerMetric(order);
+                    } else {
+                        rejected++;
+                        addFailure(failures, new Failure(record, line, "too many orders waiting to be sent"));
+                    }
+                    record++;
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                invalid++;
+                int line = e.getLocation() != null ? e.getLocation().getLineNr() : -1;
+                String reason = e.getOriginalMessage() + ", rest of the upload ignored";
+                addFailure(failures, new Failure(record, line, reason));
+            }
+        }
+        return new BulkResult(accepted, rejected, invalid, failures);
     }
 
-    private void placeOrder(Order order) {
-        logger.info("Placing the order");
-        // in this particular case you *should* use URI template vars, but that's not always an option
-        restTemplate.postForObject("http://httpbin/post?ean=" + order.ean(), order, String.class);
+    /**
+     * @return what's wrong with the order, or {@code null} if it can be placed
+     */
+    private static String validate(Order order) {
+        if (order == null) {
+            return "an order is required";
+        }
+        if (order.category() == null || order.price() == null) {
+            return "category and price are required";
+        }
+        try {
+            RevenueTracker.cents(order);
+        } catch (ArithmeticException e) {
+            return "amount is out of range";
+        }
+        return null;
+    }
+
+    private static void addFailure(List<Failure> failures, Failure failure) {
+        if (failures.size() < MAX_REPORTED_FAILURES) {
+            failures.add(failure);
+        }
+    }
+
+    private void registerMetric(Order order) {
+        orderSummaries.get(order.category).record(order.price().doubleValue());
+        // exact amounts, which the summary can't keep
+        revenueTracker.record(order);
     }
 }
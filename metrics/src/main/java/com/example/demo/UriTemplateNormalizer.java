@@ -0,0 +1,164 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Turns URIs into templates for the {@code uri} tag, for URIs that were built by concatenation instead of from a
+ * template, like {@code /products/8712345678906/stock?warehouse=3} to {@code /products/{id}/stock}.
+ * <p>
+ * The query string is dropped, and path segments that look like identifiers (numbers, which includes EANs, UUIDs,
+ * long hex strings or any of the configured patterns) are replaced by {@value #PLACEHOLDER}. Segments that don't look
+ * like identifiers are learned: once more than {@code maxValuesPerSegment} distinct values have been seen after the
+ * same path prefix, that position is taken to be variable as well. Until then, those values end up in the tag as
+ * they are, so the number of time series is bounded but not as small as it could be.
+ * <p>
+ * Segments that are templated already, like {@code {id}}, are kept. Normalized URIs are cached in a map that's
+ * cleared once it holds {@code cacheSize} entries, or when a position is learned to be variable.
+ * Instances are thread-safe.
+ */
+public class UriTemplateNormalizer implements MeterBinder {
+
+    public static final String PLACEHOLDER = "{id}";
+
+    private static final Pattern UUID =
+            Pattern.compile("[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]{16,}");
+    /** Path prefixes for which values are tracked, to keep learning from growing indefinitely */
+    private static final int MAX_TRACKED_PREFIXES = 1000;
+
+    private final List<Pattern> idPatterns;
+    private final int maxValuesPerSegment;
+    private final int cacheSize;
+    private final Map<String, String> normalized = new ConcurrentHashMap<>();
+    /** Per path prefix, the distinct values seen for the segment after it */
+    private final Map<String, Set<String>> segmentValues = new ConcurrentHashMap<>();
+    private final Set<String> variablePrefixes = ConcurrentHashMap.newKeySet();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    /**
+     * @param idPatterns patterns that, when matching a path segment as a whole, mark it as an identifier
+     * @param maxValuesPerSegment the number of distinct values after which a segment is learned to be variable
+     * @param cacheSize the maximum number of normalized URIs to cache
+     */
+    public UriTemplateNormalizer(List<Pattern> idPatterns, int maxValuesPerSegment, int cacheSize) {
+        this.idPatterns = List.copyOf(idPatterns);
+        this.maxValuesPerSegment = maxValuesPerSegment;
+        this.cacheSize = cacheSize;
+    }
+
+    public String normalize(String uri) {
+        String result = normalized.get(uri);
+        if (result != null) {
+            return result;
+        }
+        result = template(uri);
+        if (!result.equals(uri)) {
+            collapsed.incrementAndGet();
+        }
+        if (normalized.size() >= cacheSize) {
+            normalized.clear();
+        }
+        normalized.put(uri, result);
+        return result;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("uri.normalizer.collapsed", collapsed, AtomicLong::get)
+                .description("Distinct URIs that were normalized to a template for the uri tag")
+                .register(registry);
+        Gauge.builder("uri.normalizer.learned.segments", variablePrefixes, Set::size)
+                .description("Path positions learned to be variable, as they had too many distinct values")
+                .register(registry);
+    }
+
+    private String template(String uri) {
+        int queryStart = uri.indexOf('?');
+        String path = queryStart == -1 ? uri : uri.substring(0, queryStart);
+        if (path.indexOf('/') == -1) {
+            // like UNKNOWN or root
+            return path;
+        }
+        StringBuilder template = new StringBuilder(path.length());
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            if (isVariable(template, segment)) {
+                template.append(PLACEHOLDER);
+            } else {
+                template.append(segment);
+            }
+            if (end < path.length()) {
+                template.append('/');
+            }
+            start = end + 1;
+        }
+        return template.toString();
+    }
+
+    private boolean isVariable(CharSequence prefix, String segment) {
+        if (segment.isEmpty() || segment.indexOf('{') != -1) {
+            return false;
+        }
+        if (isIdentifier(segment)) {
+            return true;
+        }
+        String key = prefix.toString();
+        if (variablePrefixes.contains(key)) {
+            return true;
+        }
+        Set<String> values = segmentValues.get(key);
+        if (values == null) {
+            if (segmentValues.size() >= MAX_TRACKED_PREFIXES) {
+                return false;
+            }
+            values = segmentValues.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+        }
+        if (values.add(segment) && values.size() > maxValuesPerSegment) {
+            variablePrefixes.add(key);
+            segmentValues.remove(key);
+            // cached URIs with a value for this position no longer match what normalizing them would give
+            normalized.clear();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isIdentifier(String segment) {
+        if (isNumeric(segment)
+                || segment.length() == 36 && UUID.matcher(segment).matches()
+                || segment.length() >= 16 && HEX.matcher(segment).matches()) {
+            return true;
+        }
+        for (Pattern pattern : idPatterns) {
+            if (pattern.matcher(segment).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNumeric(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DogStatsdExporterTest {
+
+    private static final int MAX_PACKET_SIZE = 256;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private DatagramSocket agent;
+    private DogStatsdExporter exporter;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        agent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        agent.setSoTimeout(200);
+        // a step that never passes during the test, so only the explicit exports send anything
+        exporter = new DogStatsdExporter(registry, agent.getLocalAddress().getHostAddress(), agent.getLocalPort(),
+                Duration.ofHours(1), MAX_PACKET_SIZE);
+        exporter.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (exporter.isRunning()) {
+            exporter.stop();
+        }
+        agent.close();
+    }
+
+    @Test
+    void sendsLinesWithTagsInDatagramsOfAtMostTheMaxPacketSize() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            Counter.builder("orders.placed").tags("category", "SPEAKER", "shop", "shop-" + i)
+                    .register(registry).increment(i);
+        }
+        Timer.builder("orders.dispatch").tag("outcome", "success").register(registry)
+                .record(250, TimeUnit.MILLISECONDS);
+
+        exporter.export();
+
+        List<String> datagrams = receive();
+        assertThat(datagrams).hasSizeGreaterThan(1).allSatisfy(datagram -> {
+            assertThat(datagram.getBytes(StandardCharsets.UTF_8)).hasSizeLessThanOrEqualTo(MAX_PACKET_SIZE);
+            assertThat(datagram).endsWith("\n");
+        });
+        List<String> lines = lines(datagrams);
+        assertThat(lines).contains(
+                "orders.placed:0|c|#category:SPEAKER,shop:shop-0",
+                "orders.placed:39|c|#category:SPEAKER,shop:shop-39",
+                "orders.dispatch.count:1|c|#outcome:success",
+                "orders.dispatch.sum:250|c|#outcome:success",
+                "orders.dispatch.max:250|g|#outcome:success");
+        assertThat(lines).filteredOn(line -> line.startsWith("orders.placed:")).hasSize(40);
+    }
+
+    @Test
+    void sendsCounterDeltasSinceThePreviousExport() throws IOException {
+        Counter counter = Counter.builder("orders.placed").tag("category", "LIGHTING").register(registry);
+        Timer timer = Timer.builder("orders.dispatch").register(registry);
+        counter.increment(5);
+        timer.record(100, TimeUnit.MILLISECONDS);
+        exporter.export();
+        assertThat(lines(receive())).contains("orders.placed:5|c|#category:LIGHTING", "orders.dispatch.count:1|c");
+
+        counter.increment(2.5);
+        timer.record(20, TimeUnit.MILLISECONDS);
+        timer.record(30, TimeUnit.MILLISECONDS);
+        exporter.export();
+
+        assertThat(lines(receive())).contains(
+                "orders.placed:2.5|c|#category:LIGHTING",
+                "orders.dispatch.count:2|c",
+                "orders.dispatch.sum:50|c");
+    }
+
+    @Test
+    void writesNumbersAsDecimals() {
+        assertThat(number(0)).isEqualTo("0");
+        assertThat(number(3)).isEqualTo("3");
+        assertThat(number(12.5)).isEqualTo("12.5");
+        assertThat(number(-0.25)).isEqualTo("-0.25");
+        assertThat(number(0.05)).isEqualTo("0.05");
+        assertThat(number(0.000001)).isEqualTo("0.000001");
+        assertThat(number(123456.789)).isEqualTo("123456.789");
+        // rounded to 6 decimals
+        assertThat(number(1.0000004)).isEqualTo("1");
+        assertThat(number(9.9999999)).isEqualTo("10");
+        // too large for decimals
+        assertThat(number(1e12)).isEqualTo("1000000000000");
+        assertThat(number(-1.5e15)).isEqualTo("-1500000000000000");
+    }
+
+    private static String number(double value) {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        DogStatsdExporter.putNumber(buffer, value);
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private List<String> receive() throws IOException {
+        List<String> datagrams = new ArrayList<>();
+        byte[] buffer = new byte[MAX_PACKET_SIZE * 2];
+        while (true) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                agent.receive(packet);
+            } catch (SocketTimeoutException e) {
+                return datagrams;
+            }
+            datagrams.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> lines(List<String> datagrams) {
+        return datagrams.stream().flatMap(String::lines).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderDispatcherTest {
+
+    private final List<URI> requests = new CopyOnWriteArrayList<>();
+
+    private final OrderDispatcher dispatcher = new OrderDispatcher(
+            new RestTemplateBuilder().requestFactory(() -> (uri, method) -> {
+                requests.add(uri);
+                var request = new MockClientHttpRequest(method, uri);
+                request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+                return request;
+            }),
+            new SimpleMeterRegistry(), 100, 5, Duration.ofSeconds(1), 2);
+
+    @Test
+    void sendsAllAcceptedOrdersInBatchesWhenStopped() {
+        dispatcher.start();
+        for (int i = 0; i < 12; i++) {
+            assertThat(dispatcher.dispatch(order(i))).isTrue();
+        }
+
+        dispatcher.stop();
+
+        assertThat(requests).allSatisfy(uri -> assertThat(eans(uri)).hasSizeLessThanOrEqualTo(5));
+        assertThat(requests.stream().flatMap(uri -> eans(uri).stream()))
+                .containsExactlyInAnyOrder("0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11");
+    }
+
+    @Test
+    void rejectsOrdersWhenNotRunning() throws InterruptedException {
+        assertThat(dispatcher.dispatch(order(1))).isFalse();
+
+        dispatcher.start();
+        dispatcher.stop();
+
+        assertThat(dispatcher.dispatch(order(2))).isFalse();
+        assertThat(dispatcher.dispatch(order(3), Duration.ofMillis(10))).isFalse();
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    void canBeRestartedAfterHavingStopped() {
+        dispatcher.start();
+        dispatcher.stop();
+
+        dispatcher.start();
+        assertThat(dispatcher.dispatch(order(1))).isTrue();
+        dispatcher.stop();
+
+        assertThat(requests).singleElement().satisfies(uri -> assertThat(eans(uri)).containsExactly("1"));
+    }
+
+    @Test
+    void canBeStoppedWithoutHavingStarted() {
+        dispatcher.stop();
+
+        assertThat(dispatcher.isRunning()).isFalse();
+    }
+
+    @Test
+    void stopsAfterTheWebServer() {
+        assertThat(dispatcher.getPhase()).isLessThan(WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1024);
+    }
+
+    private static SalesController.Order order(int ean) {
+        return new SalesController.Order(String.valueOf(ean), SalesController.Category.SPEAKER, 1, BigDecimal.TEN);
+    }
+
+    private static List<String> eans(URI uri) {
+        return List.of(UriComponentsBuilder.fromUri(uri).build().getQueryParams().getFirst("ean").split(","));
+    }
+}
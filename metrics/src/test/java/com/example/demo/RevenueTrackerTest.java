@@ -0,0 +1,43 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RevenueTrackerTest {
+
+    private final RevenueTracker tracker = new RevenueTracker();
+
+    @Test
+    void keepsExactAmountsRoundedToCents() {
+        tracker.record(order(SalesController.Category.SPEAKER, 3, "19.995"));
+        tracker.record(order(SalesController.Category.SPEAKER, 1, "0.004"));
+        tracker.record(order(SalesController.Category.LIGHTING, 1, "0.1"));
+
+        assertThat(tracker.totals(RevenueTracker.Window.MINUTE).get(SalesController.Category.SPEAKER))
+                .isEqualTo(new RollingWindow.Totals(2, 4, 5999));
+        assertThat(tracker.totals(RevenueTracker.Window.HOUR).get(SalesController.Category.LIGHTING))
+                .isEqualTo(new RollingWindow.Totals(1, 1, 10));
+        assertThat(tracker.totals(RevenueTracker.Window.HOUR).get(SalesController.Category.INSTRUMENT))
+                .isEqualTo(new RollingWindow.Totals(0, 0, 0));
+    }
+
+    @Test
+    void roundsHalfCentsUp() {
+        assertThat(RevenueTracker.cents(order(SalesController.Category.SPEAKER, 1, "0.005"))).isEqualTo(1);
+        assertThat(RevenueTracker.cents(order(SalesController.Category.SPEAKER, 1, "-0.005"))).isEqualTo(-1);
+    }
+
+    @Test
+    void rejectsAmountsThatDontFitInCents() {
+        assertThatThrownBy(() -> RevenueTracker.cents(order(SalesController.Category.SPEAKER, 2, "1e17")))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    private static SalesController.Order order(SalesController.Category category, int quantity, String price) {
+        return new SalesController.Order("1", category, quantity, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingWindowTest {
+
+    private final AtomicLong nanoTime = new AtomicLong();
+    /** Ten one-second buckets */
+    private final RollingWindow window = new RollingWindow(Duration.ofSeconds(10), 10, nanoTime::get);
+
+    @Test
+    void addsUpWhatWasRecordedInTheWindow() {
+        window.record(2, 1000);
+        advanceMillis(500);
+        window.record(1, 250);
+        advanceSeconds(1);
+        window.record(3, 1);
+
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(3, 6, 1251));
+    }
+
+    @Test
+    void dropsBucketsOnceTheyreOutOfTheWindow() {
+        window.record(1, 100);
+        advanceSeconds(1);
+        window.record(1, 200);
+
+        advanceSeconds(9);
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(1, 1, 200));
+
+        advanceSeconds(1);
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(0, 0, 0));
+    }
+
+    @Test
+    void reusesBucketsWhenWrappingAround() {
+        for (int second = 0; second < 25; second++) {
+            window.record(1, second);
+            advanceSeconds(1);
+        }
+        nanoTime.addAndGet(-1);
+
+        // seconds 15 to 24
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(10, 10, 195));
+    }
+
+    @Test
+    void startsAfreshAfterAnIdlePeriodLongerThanTheWindow() {
+        window.record(1, 100);
+        advanceSeconds(35);
+
+        window.record(1, 1);
+
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(1, 1, 1));
+    }
+
+    @Test
+    void handlesNegativeClockValues() {
+        nanoTime.set(-TimeUnit.SECONDS.toNanos(1) - 1);
+        window.record(1, 100);
+        advanceSeconds(1);
+        window.record(1, 200);
+
+        assertThat(window.totals()).isEqualTo(new RollingWindow.Totals(2, 2, 300));
+    }
+
+    private void advanceSeconds(long seconds) {
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    private void advanceMillis(long millis) {
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class SalesControllerTest {
+
+    private static final String ORDER = """
+            {"ean":"1","category":"SPEAKER","quantity":1,"price":199.99}""";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderDispatcher dispatcher = new OrderDispatcher(
+            new RestTemplateBuilder().requestFactory(() -> (uri, method) -> {
+                var request = new MockClientHttpRequest(method, uri);
+                request.setResponse(new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+                return request;
+            }),
+            meterRegistry, 1000, 50, Duration.ofMillis(10), 1);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(
+            new SalesController(dispatcher, new ObjectMapper(), new RevenueTracker(), meterRegistry)).build();
+
+    @BeforeEach
+    void startDispatcher() {
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void stopDispatcher() {
+        dispatcher.stop();
+    }
+
+    @Test
+    void placesSingleOrders() throws Exception {
+        mockMvc.perform(post("/order").contentType(MediaType.APPLICATION_JSON).content(ORDER))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    void rejectsSingleOrdersWithAnAmountOutOfRangeBeforeDispatchingThem() throws Exception {
+        mockMvc.perform(post("/order").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ean\":\"1\",\"category\":\"SPEAKER\",\"quantity\":2,\"price\":1e17}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.detail").value("amount is out of range"));
+        mockMvc.perform(post("/order").contentType(MediaType.APPLICATION_JSON).content("{\"ean\":\"1\"}"))
+                .andExpect(status().isBadRequest());
+
+        dispatcher.stop();
+        assertThat(meterRegistry.get("orders.dispatch.batch.size").summary().count()).isZero();
+    }
+
+    @Test
+    void placesOrdersFromNdjson() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON, ORDER + "\n" + ORDER + "\n")
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.invalid").value(0))
+                .andExpect(jsonPath("$.failures").isEmpty());
+    }
+
+    @Test
+    void placesOrdersFromAJsonArray() throws Exception {
+        upload(MediaType.APPLICATION_JSON, "[" + ORDER + ",\n" + ORDER + "]")
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.invalid").value(0));
+    }
+
+    @Test
+    void skipsInvalidOrders() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON, ORDER + "\n{\"ean\":\"2\",\"quantity\":1}\n" + ORDER + "\n")
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.failures[0].record").value(2))
+                .andExpect(jsonPath("$.failures[0].line").value(2))
+                .andExpect(jsonPath("$.failures[0].reason").value("category and price are required"));
+    }
+
+    @Test
+    void skipsOrdersWithAnAmountOutOfRange() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON,
+                "{\"ean\":\"1\",\"category\":\"SPEAKER\",\"quantity\":2,\"price\":1e17}\n" + ORDER + "\n")
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.failures[0].reason").value("amount is out of range"));
+    }
+
+    @Test
+    void skipsNullOrders() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON, ORDER + "\nnull\n")
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.failures[0].reason").value("an order is required"));
+        upload(MediaType.APPLICATION_JSON, "[null, " + ORDER + "]")
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.failures[0].record").value(1));
+    }
+
+    @Test
+    void ignoresTheRestOfTheUploadAfterASyntaxError() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON, ORDER + "\n{\"ean\":\n" + ORDER + "\n")
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.failures.length()").value(1))
+                .andExpect(jsonPath("$.failures[0].record").value(2))
+                .andExpect(jsonPath("$.failures[0].reason").value(containsString("rest of the upload ignored")));
+    }
+
+    @Test
+    void reportsTheFirst100FailuresButCountsThemAll() throws Exception {
+        upload(MediaType.APPLICATION_NDJSON, "{}\n".repeat(150) + ORDER + "\n")
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.invalid").value(150))
+                .andExpect(jsonPath("$.failures.length()").value(100))
+                .andExpect(jsonPath("$.failures[99].record").value(100));
+    }
+
+    private ResultActions upload(MediaType contentType, String body) throws Exception {
+        return mockMvc.perform(post("/orders").contentType(contentType).content(body)).andExpect(status().isOk());
+    }
+}
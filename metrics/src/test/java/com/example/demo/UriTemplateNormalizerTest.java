@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UriTemplateNormalizerTest {
+
+    private final UriTemplateNormalizer normalizer =
+            new UriTemplateNormalizer(List.of(Pattern.compile("[A-Z]{2}\\d+")), 100, 10_000);
+
+    @Test
+    void keepsTheNumberOfMetersFlatForMillionsOfUniqueUris() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MetricsConfig().uriNormalizingMeterFilter(normalizer));
+
+        int meters = 0;
+        for (int round = 0; round < 2; round++) {
+            for (long i = round * 1_000_000L; i < (round + 1) * 1_000_000L; i++) {
+                record(registry, "/products/" + (8_712_345_000_000L + i) + "/stock?warehouse=" + i % 7);
+                record(registry, "/customers/" + new UUID(i, ~i) + "/orders");
+                record(registry, "/search/term" + i);
+            }
+            if (round == 0) {
+                meters = registry.getMeters().size();
+            }
+        }
+
+        assertThat(registry.getMeters()).hasSize(meters);
+        // the templates, plus the search terms seen before that position was learned to be variable
+        assertThat(meters).isLessThanOrEqualTo(3 + 100);
+        assertThat(registry.find("http.server.requests").tag("uri", "/products/{id}/stock").timer().count())
+                .isEqualTo(2_000_000);
+        assertThat(registry.find("http.server.requests").tag("uri", "/search/{id}").timer()).isNotNull();
+    }
+
+    @Test
+    void replacesIdentifiersAndDropsTheQuery() {
+        assertThat(normalizer.normalize("/products/8712345678906/stock?warehouse=3")).isEqualTo("/products/{id}/stock");
+        assertThat(normalizer.normalize("/customers/3f2a9c1b-0d4e-4a5b-9c6d-7e8f9a0b1c2d"))
+                .isEqualTo("/customers/{id}");
+        assertThat(normalizer.normalize("/files/0123456789abcdef0123")).isEqualTo("/files/{id}");
+        assertThat(normalizer.normalize("/invoices/NL123456")).isEqualTo("/invoices/{id}");
+        assertThat(normalizer.normalize("/products/{ean}")).isEqualTo("/products/{ean}");
+        assertThat(normalizer.normalize("/products/all")).isEqualTo("/products/all");
+        assertThat(normalizer.normalize("UNKNOWN")).isEqualTo("UNKNOWN");
+    }
+
+    @Test
+    void learnsThatSegmentsWithManyValuesAreVariable() {
+        for (int i = 0; i <= 100; i++) {
+            normalizer.normalize("/tags/tag" + i);
+        }
+
+        assertThat(normalizer.normalize("/tags/tag0")).isEqualTo("/tags/{id}");
+        assertThat(normalizer.normalize("/tags/other")).isEqualTo("/tags/{id}");
+    }
+
+    private static void record(MeterRegistry registry, String uri) {
+        Timer.builder("http.server.requests").tag("uri", uri).register(registry).record(1, TimeUnit.MILLISECONDS);
+    }
+}
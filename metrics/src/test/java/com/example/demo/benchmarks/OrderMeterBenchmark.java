@@ -0,0 +1,82 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.EnumMeterCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building and registering the orders summary for every order, as {@code SalesController} used to, with
+ * looking it up in an {@link EnumMeterCache}. The registry has common tags, like an application's registry would, as
+ * those are added to the id on every registration.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=OrderMeterBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OrderMeterBenchmark {
+
+    public enum Lookup { BUILDER, ENUM_METER_CACHE }
+
+    enum Category { INSTRUMENT, SPEAKER, LIGHTING }
+
+    private static final Category[] CATEGORIES = Category.values();
+
+    @Param
+    Lookup lookup;
+
+    private MeterRegistry registry;
+    private EnumMeterCache<Category, DistributionSummary> cache;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        registry.config().commonTags("application", "metrics", "region", "eu-west-1");
+        cache = new EnumMeterCache<>(Category.class, this::summary);
+    }
+
+    @Benchmark
+    public DistributionSummary record() {
+        Category category = CATEGORIES[next++ % CATEGORIES.length];
+        DistributionSummary summary = lookup == Lookup.BUILDER ? summary(category) : cache.get(category);
+        summary.record(99.95);
+        return summary;
+    }
+
+    private DistributionSummary summary(Category category) {
+        return DistributionSummary.builder("orders")
+                .baseUnit("euros")
+                .tag("category", category.name())
+                .register(registry);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(OrderMeterBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.RollingWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures recording into one {@link RollingWindow} from many threads at once, like concurrent orders of the same
+ * category, compared with the obvious alternatives for a single bucket: a {@code synchronized} aggregate, and one
+ * {@link AtomicLong} per value. {@code record} has 16 writer threads, use {@code -t} to try other counts;
+ * {@code readWrite} has 15 writers and a thread that keeps reading the totals, like a busy revenue endpoint.
+ * <p>
+ * Contention only shows up with as many cores as threads: on a single core the threads take turns, and only the
+ * cost of recording is measured.
+ * <pre>
+ * mvn -Pbenchmarks test -Dbenchmarks=RollingWindowBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RollingWindowBenchmark {
+
+    public enum Aggregate { ROLLING_WINDOW, SYNCHRONIZED, ATOMIC_LONG }
+
+    interface Window {
+
+        void record(long quantity, long cents);
+
+        long cents();
+    }
+
+    @Param
+    Aggregate aggregate;
+
+    private Window window;
+
+    @Setup
+    public void setUp() {
+        window = switch (aggregate) {
+            case ROLLING_WINDOW -> rollingWindow();
+            case SYNCHRONIZED -> new SynchronizedWindow();
+            case ATOMIC_LONG -> new AtomicWindow();
+        };
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void record() {
+        window.record(2, 19_999);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(15)
+    public void write() {
+        window.record(2, 19_999);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public long read() {
+        return window.cents();
+    }
+
+    private static Window rollingWindow() {
+        RollingWindow window = new RollingWindow(Duration.ofMinutes(1), 60, System::nanoTime);
+        return new Window() {
+            @Override
+            public void record(long quantity, long cents) {
+                window.record(quantity, cents);
+            }
+
+            @Override
+            public long cents() {
+                return window.totals().cents();
+            }
+        };
+    }
+
+    /** Totals of a single bucket, all updated under one lock */
+    private static class SynchronizedWindow implements Window {
+
+        private long count;
+        private long quantity;
+        private long cents;
+
+        @Override
+        public synchronized void record(long quantity, long cents) {
+            count++;
+            this.quantity += quantity;
+            this.cents += cents;
+        }
+
+        @Override
+        public synchronized long cents() {
+            return cents;
+        }
+    }
+
+    /** Totals of a single bucket, each updated atomically on its own */
+    private static class AtomicWindow implements Window {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong quantity = new AtomicLong();
+        private final AtomicLong cents = new AtomicLong();
+
+        @Override
+        public void record(long quantity, long cents) {
+            count.incrementAndGet();
+            this.quantity.addAndGet(quantity);
+            this.cents.addAndGet(cents);
+        }
+
+        @Override
+        public long cents() {
+            return cents.get();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RollingWindowBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}